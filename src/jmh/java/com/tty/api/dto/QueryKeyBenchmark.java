@@ -0,0 +1,144 @@
+package com.tty.api.dto;
+
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 查询键构建与缓存查找的基准测试，对比结构化的 QueryKey 与原先基于可读字符串的键
+ * 每次调用都新建 LambdaQueryWrapper，与 EntityRepository.get 的调用方式一致
+ * 运行：mvn -Pjmh test-compile exec:exec -Djmh.args="QueryKeyBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryKeyBenchmark {
+
+    private static final Pattern PARAM_PATTERN = Pattern.compile("#\\{ew\\.paramNameValuePairs\\.[^}]+}");
+
+    // 缓存中已有的键数量
+    private static final int CACHED_KEYS = 1000;
+
+    private final Map<QueryKey, Object> compactCache = new HashMap<>();
+    private final Map<String, Object> legacyCache = new HashMap<>();
+
+    private String uuid;
+
+    @Setup
+    public void setup() {
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), BenchPlayer.class);
+        for (int i = 0; i < CACHED_KEYS; i++) {
+            this.uuid = UUID.randomUUID().toString();
+            this.compactCache.put(QueryKey.of(this.wrapper()), Boolean.TRUE);
+            this.legacyCache.put(legacyKey(this.wrapper()), Boolean.TRUE);
+        }
+    }
+
+    @Benchmark
+    public QueryKey compactKey() {
+        return QueryKey.of(this.wrapper());
+    }
+
+    @Benchmark
+    public String legacyKey() {
+        return legacyKey(this.wrapper());
+    }
+
+    @Benchmark
+    public Object compactLookup() {
+        return this.compactCache.get(QueryKey.of(this.wrapper()));
+    }
+
+    @Benchmark
+    public Object legacyLookup() {
+        return this.legacyCache.get(legacyKey(this.wrapper()));
+    }
+
+    private LambdaQueryWrapper<BenchPlayer> wrapper() {
+        return new LambdaQueryWrapper<>(BenchPlayer.class)
+                .eq(BenchPlayer::getUuid, this.uuid)
+                .eq(BenchPlayer::getLevel, 5);
+    }
+
+    /**
+     * 原 QueryKey 的构建方式：正则替换参数占位符，参数复制到 TreeMap，反射读取排序字段，
+     * 最后拼接完整的可读字符串，键的 hashCode 与 equals 都基于该字符串
+     */
+    private static String legacyKey(LambdaQueryWrapper<?> wrapper) {
+        String segment = PARAM_PATTERN.matcher(wrapper.getSqlSegment()).replaceAll("?");
+        SortedMap<String, Object> params = new TreeMap<>(wrapper.getParamNameValuePairs());
+        StringBuilder sb = new StringBuilder();
+        sb.append(wrapper.getEntityClass().getName()).append(" | ").append(segment);
+        if (!params.isEmpty()) {
+            sb.append(" [");
+            boolean first = true;
+            for (Map.Entry<String, Object> entry : params.entrySet()) {
+                if (!first) sb.append(", ");
+                first = false;
+                // 原实现对每个参数名都做一次大写转换，判断是否需要反查字段名
+                String key = entry.getKey();
+                if (key.toUpperCase().contains("MPGEN") && params.containsKey("et")) {
+                    key = "et";
+                }
+                Object value = entry.getValue();
+                sb.append(key).append('=').append(value instanceof Number ? String.valueOf(value) : "'" + value + "'");
+            }
+            sb.append(']');
+        }
+        String orderBy = legacyOrderBy(wrapper);
+        if (!orderBy.isEmpty()) {
+            sb.append(" ORDER_BY:").append(orderBy);
+        }
+        return sb.toString();
+    }
+
+    private static String legacyOrderBy(LambdaQueryWrapper<?> wrapper) {
+        Class<?> cls = wrapper.getClass();
+        while (cls != null && cls != Object.class) {
+            try {
+                java.lang.reflect.Field field = cls.getDeclaredField("orderBy");
+                field.setAccessible(true);
+                return field.getBoolean(wrapper) ? "order" : "";
+            } catch (NoSuchFieldException e) {
+                cls = cls.getSuperclass();
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return "";
+            }
+        }
+        return "";
+    }
+
+    @TableName("bench_player")
+    public static class BenchPlayer {
+
+        @TableId
+        private Long id;
+        private String uuid;
+        private Integer level;
+
+        public Long getId() {
+            return this.id;
+        }
+
+        public String getUuid() {
+            return this.uuid;
+        }
+
+        public Integer getLevel() {
+            return this.level;
+        }
+
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.tty.api.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 紧凑二级缓存的内存占用，分别以实体对象、堆内字节数组、堆外 DirectByteBuffer 保存 100k 个实体
+ * 每次迭代结束后强制 GC，输出相对迭代开始时新增的堆内存与堆外内存
+ * 运行：mvn -Pjmh test-compile exec:exec -Djmh.args="CompactEntityTierBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class CompactEntityTierBenchmark {
+
+    private static final int ENTRIES = 100_000;
+
+    @Param({"ENTITIES", "COMPACT", "OFF_HEAP"})
+    public String tier;
+
+    private Object store;
+    private long baselineHeap;
+    private long baselineDirect;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        this.store = null;
+        this.baselineHeap = usedHeap();
+        this.baselineDirect = usedDirect();
+    }
+
+    @Benchmark
+    public Object fill() {
+        PartitionKey partition = PartitionKey.global();
+        if (this.tier.equals("ENTITIES")) {
+            Cache<PartitionedKey<FieldKey>, BenchPlayer> cache = Caffeine.newBuilder().build();
+            for (int i = 0; i < ENTRIES; i++) {
+                cache.put(new PartitionedKey<>(partition, new FieldKey("id", (long) i)), BenchPlayer.create(i));
+            }
+            this.store = cache;
+        } else {
+            CompactEntityTier<BenchPlayer> compact = new CompactEntityTier<>(BenchPlayer.class, Long.MAX_VALUE, Duration.ofHours(1), this.tier.equals("OFF_HEAP"));
+            for (int i = 0; i < ENTRIES; i++) {
+                compact.demote(new PartitionedKey<>(partition, new FieldKey("id", (long) i)), BenchPlayer.create(i));
+            }
+            this.store = compact;
+        }
+        return this.store;
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        long heap = usedHeap() - this.baselineHeap;
+        long direct = usedDirect() - this.baselineDirect;
+        System.out.printf("%n%s: heap %,d bytes, direct %,d bytes for %,d entries%n", this.tier, heap, direct, ENTRIES);
+        this.store = null;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long usedDirect() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) return pool.getMemoryUsed();
+        }
+        return 0L;
+    }
+
+    /**
+     * 离线玩家数据的典型实体
+     */
+    public static class BenchPlayer {
+
+        private Long id;
+        private String uuid;
+        private String name;
+        private Integer level;
+        private Double balance;
+        private LocalDateTime lastLogin;
+
+        static BenchPlayer create(int i) {
+            BenchPlayer player = new BenchPlayer();
+            player.id = (long) i;
+            player.uuid = new UUID(i, ~i).toString();
+            player.name = "player_" + i;
+            player.level = i % 100;
+            player.balance = i * 1.5;
+            player.lastLogin = LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(i);
+            return player;
+        }
+
+    }
+
+}
@@ -0,0 +1,180 @@
+package com.tty.api.repository;
+
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.tty.api.AbstractJavaPlugin;
+import com.tty.api.Log;
+import com.tty.api.configuration.BaseConfiguration;
+import com.tty.api.dto.QueryKey;
+import com.tty.api.dto.TempRegisterService;
+import com.tty.api.service.placeholder.PlaceholderRegistry;
+import com.tty.api.state.StateService;
+import me.clip.placeholderapi.expansion.PlaceholderExpansion;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.bukkit.event.Listener;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 未开启调试时 EntityRepository 缓存命中路径的耗时与分配，直接调用仓库的 get 与 getById
+ * get 每次调用都新建 LambdaQueryWrapper，与业务中的调用方式一致，分配包括查询条件、QueryKey、PartitionedKey 与已完成的 future；
+ * getById 只分配 FieldKey、PartitionedKey 与 future。命中路径上的调试日志使用固定参数个数的重载，未开启调试时不创建参数数组，
+ * 两者的 gc.alloc.rate.norm 即为命中路径本身的分配，不包含日志的开销。
+ * 插件实例不经过构造器创建，只设置命中路径用到的 Log，开启调试会因缺少服务器而失败，因此不覆盖输出日志时的开销。
+ * 使用 GC 分析器运行：
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="-prof gc EntityRepositoryHitBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityRepositoryHitBenchmark {
+
+    private static final String UUID = "8667ba71-b85a-4004-af54-457a9734eed7";
+
+    private final PartitionKey partition = PartitionKey.global();
+
+    private BenchRepository repository;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() throws ReflectiveOperationException {
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), BenchPlayer.class);
+        this.repository = new BenchRepository(plugin());
+
+        BenchPlayer player = new BenchPlayer();
+        player.id = 1L;
+        player.uuid = UUID;
+        Method cacheEntity = EntityRepository.class.getDeclaredMethod("cacheEntity", Object.class, PartitionKey.class);
+        cacheEntity.setAccessible(true);
+        cacheEntity.invoke(this.repository, player, this.partition);
+
+        // 业务查询条件对应的键与主键键不同，按条件本身的键放入实体缓存
+        Field entityCache = EntityRepository.class.getDeclaredField("entityCache");
+        entityCache.setAccessible(true);
+        ((Cache<PartitionedKey<QueryKey>, BenchPlayer>) entityCache.get(this.repository))
+                .put(new PartitionedKey<>(this.partition, QueryKey.of(wrapper())), player);
+
+        if (this.get().join() == null || this.getById().join() == null) {
+            throw new IllegalStateException("benchmark entity is not cached");
+        }
+    }
+
+    @Benchmark
+    public CompletableFuture<BenchPlayer> get() {
+        return this.repository.get(wrapper(), this.partition);
+    }
+
+    @Benchmark
+    public CompletableFuture<BenchPlayer> getById() {
+        return this.repository.getById(1L, this.partition);
+    }
+
+    private static LambdaQueryWrapper<BenchPlayer> wrapper() {
+        return new LambdaQueryWrapper<>(BenchPlayer.class).eq(BenchPlayer::getUuid, UUID);
+    }
+
+    /**
+     * 在服务器外创建插件实例：跳过 JavaPlugin 的构造器，只设置关闭调试的 Log
+     */
+    private static AbstractJavaPlugin plugin() throws ReflectiveOperationException {
+        Field theUnsafe = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+        theUnsafe.setAccessible(true);
+        Object unsafe = theUnsafe.get(null);
+        AbstractJavaPlugin plugin = (AbstractJavaPlugin) unsafe.getClass()
+                .getMethod("allocateInstance", Class.class)
+                .invoke(unsafe, BenchPlugin.class);
+
+        Constructor<Log> constructor = Log.class.getDeclaredConstructor(AbstractJavaPlugin.class, boolean.class);
+        constructor.setAccessible(true);
+        Field log = AbstractJavaPlugin.class.getDeclaredField("log");
+        log.setAccessible(true);
+        log.set(plugin, constructor.newInstance(plugin, false));
+        return plugin;
+    }
+
+    static final class BenchRepository extends EntityRepository<BenchPlayer> {
+
+        BenchRepository(AbstractJavaPlugin plugin) {
+            super(plugin, null);
+        }
+
+    }
+
+    static final class BenchPlugin extends AbstractJavaPlugin {
+
+        @Override
+        protected void loading() {
+        }
+
+        @Override
+        protected void enabling() {
+        }
+
+        @Override
+        protected void disabling() {
+        }
+
+        @Override
+        protected List<TempRegisterService<?>> loadOtherPlugin() {
+            return List.of();
+        }
+
+        @Override
+        protected @NotNull List<Listener> registerEvents() {
+            return List.of();
+        }
+
+        @Override
+        protected List<BaseConfiguration> configurations() {
+            return null;
+        }
+
+        @Override
+        protected List<StateService<?>> services() {
+            return null;
+        }
+
+        @Override
+        protected List<PlaceholderExpansion> expansions() {
+            return null;
+        }
+
+        @Override
+        protected PlaceholderRegistry placeholders() {
+            return null;
+        }
+
+    }
+
+    @TableName("bench_player")
+    public static class BenchPlayer {
+
+        @TableId
+        private Long id;
+        private String uuid;
+
+        public Long getId() {
+            return this.id;
+        }
+
+        public String getUuid() {
+            return this.uuid;
+        }
+
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.tty.api.service.placeholder;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tty.api.utils.ColorConverterLegacy;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.TextReplacementConfig;
+import net.kyori.adventure.text.format.TextDecoration;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 渲染一组典型 GUI 物品描述的基准测试，对比预解析模板与原先每次都解析 MiniMessage 并逐个 replaceText 的 build
+ * 运行：mvn -Pjmh test-compile exec:exec -Djmh.args="CompiledTemplateBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompiledTemplateBenchmark {
+
+    private static final List<String> LORE = List.of(
+            "<gradient:#ffaa00:#ffff55>Home <name></gradient>",
+            "&8&m                              ",
+            "&7Owner: &f<owner>",
+            "&7World: &f<world> &8(<x>, <y>, <z>)",
+            "<gray>Created: <white><created>",
+            "<gray>Visits: <gold><visits>",
+            "",
+            "<hover:show_text:'<gray>Teleport to <name>'><yellow>▶ Left click to teleport</hover>",
+            "&c▶ Right click to delete",
+            "&8&m                              "
+    );
+
+    private static final Map<String, Component> PLACEHOLDERS = Map.of(
+            "name", Component.text("base"),
+            "owner", Component.text("Steve"),
+            "world", Component.text("world"),
+            "x", Component.text("128"),
+            "y", Component.text("64"),
+            "z", Component.text("-256"),
+            "created", Component.text("2024-01-01 12:00"),
+            "visits", Component.text("42")
+    );
+
+    private final Cache<String, CompiledTemplate> templates = Caffeine.newBuilder().maximumSize(4096).build();
+
+    @Benchmark
+    public List<Component> compiled() {
+        List<Component> lines = new ArrayList<>(LORE.size());
+        for (String line : LORE) {
+            lines.add(this.templates.get(line, CompiledTemplate::compile).render(PLACEHOLDERS));
+        }
+        return lines;
+    }
+
+    @Benchmark
+    public List<Component> legacy() {
+        List<Component> lines = new ArrayList<>(LORE.size());
+        for (String line : LORE) {
+            lines.add(legacyBuild(line, PLACEHOLDERS));
+        }
+        return lines;
+    }
+
+    /**
+     * 原 PlaceholderEngine.build：每次转换颜色代码并完整解析 MiniMessage，每个占位符遍历一次组件树
+     */
+    private static Component legacyBuild(String template, Map<String, Component> placeholders) {
+        Component result = MiniMessage.miniMessage().deserialize(ColorConverterLegacy.convert(template));
+        for (Map.Entry<String, Component> entry : placeholders.entrySet()) {
+            result = result.replaceText(TextReplacementConfig.builder().matchLiteral("<" + entry.getKey() + ">").replacement(entry.getValue()).build());
+        }
+        if (result instanceof TextComponent tc) {
+            return tc.decoration(TextDecoration.ITALIC, false);
+        }
+        return Component.empty().append(result.decoration(TextDecoration.ITALIC, false));
+    }
+
+}
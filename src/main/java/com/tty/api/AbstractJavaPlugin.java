@@ -4,11 +4,13 @@ import com.google.gson.JsonParser;
 import com.tty.api.dto.PluginVersion;
 import com.tty.api.dto.TempRegisterService;
 import com.tty.api.configuration.BaseConfiguration;
+import com.tty.api.enumType.OverflowPolicy;
 import com.tty.api.scheduler.RunTask;
 import com.tty.api.scheduler.Scheduler;
 import com.tty.api.service.impl.PlaceholderEngineImpl;
 import com.tty.api.service.placeholder.PlaceholderRegistry;
 import com.tty.api.state.StateService;
+import com.tty.api.utils.DataExecutor;
 import com.tty.api.utils.VersionUtil;
 import lombok.Getter;
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
@@ -68,6 +70,9 @@ public abstract class AbstractJavaPlugin extends JavaPlugin {
     @Getter
     private PlaceholderEngineImpl engine;
 
+    // 插件内所有 BaseDataManager 共享的数据库执行器，首次使用时创建
+    private volatile DataExecutor dataExecutor;
+
     @Override
     public void onLoad() {
         this.scheduler = Scheduler.create(this);
@@ -118,7 +123,8 @@ public abstract class AbstractJavaPlugin extends JavaPlugin {
                 this.getLog().debug("register expansion {}", expansion.getClass().getName());
             }
         }
-        this.engine = new PlaceholderEngineImpl(this.placeholders());
+        this.engine = new PlaceholderEngineImpl(this.placeholders(), this.createPlaceholderExecutor());
+        Bukkit.getPluginManager().registerEvents(this.engine, this);
         this.checkVersionTask = this.createCheckVersionTask();
     }
 
@@ -131,6 +137,56 @@ public abstract class AbstractJavaPlugin extends JavaPlugin {
         }
         this.engine.shutdown();
         this.disabling();
+        if (this.dataExecutor != null) {
+            this.dataExecutor.shutdown(10, TimeUnit.SECONDS);
+            this.dataExecutor = null;
+        }
+    }
+
+    /**
+     * 获取插件共享的数据库执行器，传入 BaseDataManager 后由插件在 disable 阶段统一关闭
+     * 通过 config.yml 中的 database.executor.type（bounded / virtual）与 database.executor.max-concurrency 配置
+     * @return 共享执行器
+     */
+    public DataExecutor getDataExecutor() {
+        DataExecutor executor = this.dataExecutor;
+        if (executor != null) return executor;
+        synchronized (this) {
+            if (this.dataExecutor == null) {
+                String name = this.getName().toLowerCase() + "-db";
+                int concurrency = Math.max(1, this.getConfig().getInt("database.executor.max-concurrency", 8));
+                if ("virtual".equalsIgnoreCase(this.getConfig().getString("database.executor.type", "bounded"))) {
+                    this.dataExecutor = DataExecutor.virtual(name, concurrency, 100, 500L);
+                } else {
+                    this.dataExecutor = DataExecutor.bounded(name, concurrency, 100, 500L);
+                }
+            }
+            return this.dataExecutor;
+        }
+    }
+
+    /**
+     * 创建占位符渲染执行器
+     * 通过 config.yml 中的 placeholder.executor.type（bounded / virtual）、placeholder.executor.max-concurrency、
+     * placeholder.executor.queue-capacity 与 placeholder.executor.overflow（reject / caller_runs / drop_oldest）配置
+     * @return 渲染执行器
+     */
+    private DataExecutor createPlaceholderExecutor() {
+        String name = this.getName().toLowerCase() + "-placeholder";
+        int concurrency = Math.max(1, this.getConfig().getInt("placeholder.executor.max-concurrency", 4));
+        int queueCapacity = Math.max(1, this.getConfig().getInt("placeholder.executor.queue-capacity", 256));
+        String value = this.getConfig().getString("placeholder.executor.overflow", "caller_runs");
+        OverflowPolicy overflow;
+        try {
+            overflow = OverflowPolicy.valueOf(value.toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            this.log.warn("unknown placeholder executor overflow policy {}, using caller_runs.", value);
+            overflow = OverflowPolicy.CALLER_RUNS;
+        }
+        if ("virtual".equalsIgnoreCase(this.getConfig().getString("placeholder.executor.type", "bounded"))) {
+            return DataExecutor.virtual(name, concurrency, queueCapacity, overflow);
+        }
+        return DataExecutor.bounded(name, concurrency, queueCapacity, overflow);
     }
 
     /**
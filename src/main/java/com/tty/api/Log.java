@@ -3,6 +3,7 @@ package com.tty.api;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
 public class Log {
@@ -80,6 +81,27 @@ public class Log {
         this.log(Level.INFO, throwable, PREFIX_DEBUG + wrapCaller(msg), args);
     }
 
+    /**
+     * 延迟构建的调试日志，未开启调试时不会调用 supplier
+     * @param supplier 日志内容
+     */
+    public void debug(Supplier<String> supplier) {
+        if (!this.debug) return;
+        this.log(Level.INFO, PREFIX_DEBUG + wrapCaller(supplier.get()));
+    }
+
+    /**
+     * 指定调用方名称的调试日志，不再通过 StackWalker 查找调用方
+     * 高频调用处应先判断 isDebug，避免构建可变参数数组
+     * @param caller 调用方名称
+     * @param msg 日志内容
+     * @param args 参数
+     */
+    public void debugAs(String caller, String msg, Object... args) {
+        if (!this.debug) return;
+        this.log(Level.INFO, PREFIX_DEBUG + "[" + caller + "] [" + Thread.currentThread().getName() + "] " + msg, args);
+    }
+
     private void log(Level level, String msg, Object... args) {
         if (this.shouldNotLog(level)) return;
         String message = this.formatMessage(msg, args);
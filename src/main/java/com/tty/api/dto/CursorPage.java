@@ -0,0 +1,22 @@
+package com.tty.api.dto;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * @param records 当前页数据
+ * @param next    下一页的游标，没有下一页时为 null
+ * @param total   总记录数，未请求统计时为 -1
+ */
+public record CursorPage<T>(List<T> records, @Nullable PageCursor<T> next, long total) {
+
+    public static <T> CursorPage<T> build(List<T> records, @Nullable PageCursor<T> next, long total) {
+        return new CursorPage<>(records, next, total);
+    }
+
+    public boolean hasMore() {
+        return this.next != null;
+    }
+
+}
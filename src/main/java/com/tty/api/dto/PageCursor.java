@@ -0,0 +1,73 @@
+package com.tty.api.dto;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * 键集分页游标，记录上一页最后一条记录的排序键
+ * 下一页通过 column > lastValue（降序时为 <）加 LIMIT 查询，不再使用 OFFSET，任意深度的页查询代价与第一页相同。
+ * 排序列必须唯一（例如主键），否则相同值的记录可能被跳过
+ * @param column 排序列名
+ * @param keyExtractor 从实体中读取排序键的函数
+ * @param lastValue 上一页最后一条记录的排序键，为 null 时表示第一页
+ * @param ascending 是否升序
+ */
+public record PageCursor<T>(@NotNull String column, @NotNull Function<T, ?> keyExtractor, @Nullable Object lastValue, boolean ascending) {
+
+    private static final Pattern COLUMN_PATTERN = Pattern.compile("[A-Za-z0-9_.`]+");
+
+    public PageCursor {
+        if (!COLUMN_PATTERN.matcher(column).matches()) {
+            throw new IllegalArgumentException("invalid cursor column: " + column);
+        }
+    }
+
+    /**
+     * 第一页的游标
+     * @param column 排序列名
+     * @param keyExtractor 从实体中读取排序键的函数
+     * @param ascending 是否升序
+     * @return 游标
+     */
+    public static <T> PageCursor<T> first(@NotNull String column, @NotNull Function<T, ?> keyExtractor, boolean ascending) {
+        return new PageCursor<>(column, keyExtractor, null, ascending);
+    }
+
+    public static <T> PageCursor<T> first(@NotNull String column, @NotNull Function<T, ?> keyExtractor) {
+        return first(column, keyExtractor, true);
+    }
+
+    /**
+     * 以指定记录作为上一页最后一条记录，构建下一页的游标
+     * @param last 上一页最后一条记录
+     * @return 游标
+     */
+    public PageCursor<T> after(@NotNull T last) {
+        return new PageCursor<>(this.column, this.keyExtractor, this.keyExtractor.apply(last), this.ascending);
+    }
+
+    public boolean isFirst() {
+        return this.lastValue == null;
+    }
+
+    /**
+     * 游标对应的查询条件片段，参数占位符为 {0}
+     * @return 条件片段，第一页时为 null
+     */
+    public @Nullable String seekCondition() {
+        return this.isFirst() ? null : this.column + (this.ascending ? " > {0}" : " < {0}");
+    }
+
+    /**
+     * 排序与数量限制片段，多查询一条用于判断是否还有下一页
+     * @param size 每页数量
+     * @return SQL 片段
+     */
+    public String orderAndLimit(int size) {
+        return "ORDER BY " + this.column + (this.ascending ? " ASC" : " DESC") + " LIMIT " + (size + 1);
+    }
+
+}
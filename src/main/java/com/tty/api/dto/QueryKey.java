@@ -7,25 +7,41 @@ import org.jetbrains.annotations.NotNull;
 
 import java.lang.reflect.Field;
 import java.util.*;
-import java.util.stream.Collectors;
 
+/**
+ * 查询条件的紧凑结构化键
+ * 由实体类、归一化后的 SQL 片段（参数占位符统一替换为 ?）以及按出现顺序排列的参数值组成，
+ * 整数类型的参数值统一为 Long，5 与 5L 得到相同的键；hashCode 在构造时计算一次，可读字符串仅在 toString 时懒加载构建
+ */
 public final class QueryKey {
 
+    private static final String PARAM_PREFIX = "#{ew.paramNameValuePairs.";
+
+    private static final Object[] NO_VALUES = new Object[0];
+
+    // orderBy 相关字段只在类加载时查找一次，避免每次构建键都遍历继承链
+    private static final Field ORDER_BY_FIELD = findFieldInHierarchy("orderBy");
+    private static final Field ORDER_BY_SQL_FIELD = findFieldInHierarchy("orderBySql");
+
     private final Class<?> entityClass;
-    private final String sqlSegmentSnapshot;
-    private final SortedMap<String, Object> paramsSnapshot;
-    private final String orderBySqlSnapshot;
-    private final String readableCondition;
+    private final String sqlSegment;
+    private final Object[] values;
+    private final String orderBySql;
     private final int hashCode;
 
-    private QueryKey(Class<?> entityClass, String sqlSegmentSnapshot, SortedMap<String, Object> paramsSnapshot, String orderBySqlSnapshot) {
-        this.entityClass = entityClass;
-        this.sqlSegmentSnapshot = sqlSegmentSnapshot == null ? "" : sqlSegmentSnapshot;
-        this.paramsSnapshot = paramsSnapshot == null ? new TreeMap<>() : paramsSnapshot;
-        this.orderBySqlSnapshot = orderBySqlSnapshot == null ? "" : orderBySqlSnapshot;
+    private volatile String readableCondition;
 
-        this.readableCondition = buildReadableCondition();
-        this.hashCode = readableCondition.hashCode();
+    private QueryKey(Class<?> entityClass, String sqlSegment, Object[] values, String orderBySql) {
+        this.entityClass = entityClass;
+        this.sqlSegment = sqlSegment == null ? "" : sqlSegment;
+        this.values = values == null ? NO_VALUES : normalizeValues(values);
+        this.orderBySql = orderBySql == null ? "" : orderBySql;
+
+        int h = entityClass.hashCode();
+        h = 31 * h + this.sqlSegment.hashCode();
+        h = 31 * h + Arrays.deepHashCode(this.values);
+        h = 31 * h + this.orderBySql.hashCode();
+        this.hashCode = h;
     }
 
     public static <T> QueryKey of(@NotNull LambdaQueryWrapper<T> wrapper) {
@@ -43,18 +59,12 @@ public final class QueryKey {
         } catch (Exception e) {
             rawSqlSegment = "";
         }
-        String cleanedSqlSegment = cleanSqlSegment(rawSqlSegment);
 
-        SortedMap<String, Object> paramsSnapshot;
+        Map<String, Object> params;
         try {
-            Map<String, Object> params = wrapper.getParamNameValuePairs();
-            if (params == null || params.isEmpty()) {
-                paramsSnapshot = new TreeMap<>();
-            } else {
-                paramsSnapshot = new TreeMap<>(params);
-            }
+            params = wrapper.getParamNameValuePairs();
         } catch (Exception e) {
-            paramsSnapshot = new TreeMap<>();
+            params = Collections.emptyMap();
         }
 
         String orderBySqlSnapshot;
@@ -64,110 +74,137 @@ public final class QueryKey {
             orderBySqlSnapshot = "";
         }
 
-        return new QueryKey(entityClass, cleanedSqlSegment, paramsSnapshot, orderBySqlSnapshot);
+        return normalize(entityClass, rawSqlSegment, params, orderBySqlSnapshot);
     }
 
-    private String buildReadableCondition() {
-        StringBuilder sb = new StringBuilder();
+    /**
+     * 构建单列等值条件的归一化片段，与 LambdaQueryWrapper 中 column = value 条件归一化后的片段相同
+     * @param column 列名
+     * @return 归一化片段
+     */
+    public static String equalsSegment(@NotNull String column) {
+        return "(" + column + " = ?)";
+    }
 
-        if (this.entityClass != null) {
-            sb.append(this.entityClass.getName()).append(" | ");
-        } else {
-            sb.append("Entity=UNKNOWN").append(" | ");
-        }
+    /**
+     * 使用已归一化（参数以 ? 表示）的片段直接构建查询键，不经过 LambdaQueryWrapper
+     * @param entityClass 实体类
+     * @param sqlSegment 归一化片段
+     * @param values 按出现顺序排列的参数值
+     * @return 查询键
+     */
+    public static QueryKey ofSegment(@NotNull Class<?> entityClass, @NotNull String sqlSegment, Object... values) {
+        return new QueryKey(entityClass, sqlSegment, values, "");
+    }
 
-        if (StringUtils.isNotBlank(this.sqlSegmentSnapshot)) {
-            sb.append(this.sqlSegmentSnapshot);
-        } else {
-            sb.append("<no-sql-segment>");
+    /**
+     * 单次扫描 SQL 片段，将参数占位符替换为 ?，并按出现顺序收集参数值
+     * @param entityClass 实体类
+     * @param rawSqlSegment 原始 SQL 片段
+     * @param params 参数名与参数值
+     * @param orderBySql 排序片段
+     * @return 查询键
+     */
+    private static QueryKey normalize(Class<?> entityClass, String rawSqlSegment, Map<String, Object> params, String orderBySql) {
+        if (StringUtils.isBlank(rawSqlSegment)) {
+            return new QueryKey(entityClass, "", NO_VALUES, orderBySql);
         }
-
-        if (!this.paramsSnapshot.isEmpty()) {
-            sb.append(" [");
-            String paramStr = this.paramsSnapshot.entrySet().stream().map(entry -> {
-                String key = entry.getKey();
-                Object value = entry.getValue();
-                String resolvedName = tryResolveParamName(key, value);
-                return resolvedName + "=" + formatValue(value);
-            }).collect(Collectors.joining(", "));
-            sb.append(paramStr).append("]");
+        int start = rawSqlSegment.indexOf(PARAM_PREFIX);
+        if (start < 0) {
+            return new QueryKey(entityClass, rawSqlSegment, NO_VALUES, orderBySql);
         }
 
-        if (StringUtils.isNotBlank(this.orderBySqlSnapshot)) {
-            sb.append(" ORDER_BY:").append(this.orderBySqlSnapshot);
+        StringBuilder sb = new StringBuilder(rawSqlSegment.length());
+        List<Object> values = new ArrayList<>(params == null ? 4 : params.size());
+        int from = 0;
+        while (start >= 0) {
+            int nameStart = start + PARAM_PREFIX.length();
+            int end = rawSqlSegment.indexOf('}', nameStart);
+            if (end < 0) break;
+            int nameEnd = end;
+            int comma = rawSqlSegment.indexOf(',', nameStart);
+            if (comma >= 0 && comma < end) {
+                nameEnd = comma;
+            }
+            sb.append(rawSqlSegment, from, start).append('?');
+            values.add(params == null ? null : params.get(rawSqlSegment.substring(nameStart, nameEnd)));
+            from = end + 1;
+            start = rawSqlSegment.indexOf(PARAM_PREFIX, from);
         }
-
-        return sb.toString();
+        sb.append(rawSqlSegment, from, rawSqlSegment.length());
+        return new QueryKey(entityClass, sb.toString(), values.toArray(), orderBySql);
     }
 
-    private static String cleanSqlSegment(String sqlSegment) {
-        if (StringUtils.isBlank(sqlSegment)) return "";
-        return sqlSegment.replaceAll("#\\{ew\\.paramNameValuePairs\\.[^}]+}", "?");
+    /**
+     * 将 Byte / Short / Integer 参数值统一为 Long，不需要转换时返回原数组
+     * @param values 参数值
+     * @return 归一化后的参数值
+     */
+    private static Object[] normalizeValues(Object[] values) {
+        Object[] normalized = values;
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            Object widened = normalizeValue(value);
+            if (widened != value) {
+                if (normalized == values) normalized = values.clone();
+                normalized[i] = widened;
+            }
+        }
+        return normalized;
     }
 
-    private String tryResolveParamName(String paramKey, Object paramValue) {
-        if (this.entityClass == null || paramValue == null) {
-            return paramKey;
+    /**
+     * 将 Byte / Short / Integer 值统一为 Long，其它值原样返回
+     * 缓存键中的参数值都经过该转换，按 Integer 查询与 Long 类型的字段得到相同的键
+     * @param value 值
+     * @return 归一化后的值
+     */
+    public static Object normalizeValue(Object value) {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
         }
+        return value;
+    }
 
-        if (!paramKey.toUpperCase().contains("MPGEN") && !paramKey.toUpperCase().contains("PARAM")) {
-            return paramKey;
+    private String buildReadableCondition() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(this.entityClass.getName()).append(" | ");
+
+        if (StringUtils.isNotBlank(this.sqlSegment)) {
+            sb.append(this.sqlSegment);
+        } else {
+            sb.append("<no-sql-segment>");
         }
 
-        try {
-            Object possibleEntityInstance = null;
-            if (this.paramsSnapshot.containsKey("et")) {
-                possibleEntityInstance = this.paramsSnapshot.get("et");
-            } else if (this.paramsSnapshot.containsKey("entity")) {
-                possibleEntityInstance = this.paramsSnapshot.get("entity");
-            }
-            if (this.entityClass.isInstance(possibleEntityInstance)) {
-                List<String> matches = new ArrayList<>();
-                for (Field field : getAllDeclaredFields(this.entityClass)) {
-                    try {
-                        field.setAccessible(true);
-                        Object fieldValue = field.get(possibleEntityInstance);
-                        if (Objects.equals(fieldValue, paramValue)) {
-                            matches.add(field.getName());
-                        }
-                    } catch (Throwable ignored) {
-                    }
-                }
-                if (matches.size() == 1) {
-                    return matches.getFirst();
-                }
+        if (this.values.length > 0) {
+            sb.append(" [");
+            for (int i = 0; i < this.values.length; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(formatValue(this.values[i]));
             }
-        } catch (Throwable ignored) { }
+            sb.append("]");
+        }
 
-        return paramKey;
+        if (StringUtils.isNotBlank(this.orderBySql)) {
+            sb.append(" ORDER_BY:").append(this.orderBySql);
+        }
+
+        return sb.toString();
     }
 
-    private String formatValue(Object value) {
+    private static String formatValue(Object value) {
         if (value == null) return "null";
         if (value instanceof Number || value instanceof Boolean) return String.valueOf(value);
         return "'" + value + "'";
     }
 
-    private static String extractOrderBySql(LambdaQueryWrapper<?> wrapper) {
-        try {
-            Field field = findFieldInHierarchy("orderBy");
-            boolean orderBy = false;
-            if (field != null) {
-                field.setAccessible(true);
-                orderBy = field.getBoolean(wrapper);
-            }
-
-            if (orderBy) {
-                Field orderBySqlField = findFieldInHierarchy("orderBySql");
-                if (orderBySqlField != null) {
-                    orderBySqlField.setAccessible(true);
-                    Object val = orderBySqlField.get(wrapper);
-                    if (val instanceof String s) {
-                        return StringUtils.isNotBlank(s) ? s : "";
-                    }
-                }
-            }
-        } catch (Throwable ignored) { }
+    private static String extractOrderBySql(LambdaQueryWrapper<?> wrapper) throws IllegalAccessException {
+        if (ORDER_BY_FIELD == null || !ORDER_BY_FIELD.getBoolean(wrapper)) return "";
+        if (ORDER_BY_SQL_FIELD == null) return "";
+        Object val = ORDER_BY_SQL_FIELD.get(wrapper);
+        if (val instanceof String s) {
+            return StringUtils.isNotBlank(s) ? s : "";
+        }
         return "";
     }
 
@@ -175,30 +212,27 @@ public final class QueryKey {
         Class<?> cls = AbstractLambdaWrapper.class;
         while (cls != null && cls != Object.class) {
             try {
-                return cls.getDeclaredField(fieldName);
+                Field field = cls.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                return field;
             } catch (NoSuchFieldException e) {
                 cls = cls.getSuperclass();
+            } catch (RuntimeException e) {
+                return null;
             }
         }
         return null;
     }
 
-    private static List<Field> getAllDeclaredFields(Class<?> cls) {
-        List<Field> fields = new ArrayList<>();
-        Class<?> cur = cls;
-        while (cur != null && cur != Object.class) {
-            Field[] declared = cur.getDeclaredFields();
-            fields.addAll(Arrays.asList(declared));
-            cur = cur.getSuperclass();
-        }
-        return fields;
-    }
-
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof QueryKey queryKey)) return false;
-        return Objects.equals(this.readableCondition, queryKey.readableCondition);
+        return this.hashCode == queryKey.hashCode
+                && this.entityClass == queryKey.entityClass
+                && this.sqlSegment.equals(queryKey.sqlSegment)
+                && this.orderBySql.equals(queryKey.orderBySql)
+                && Arrays.deepEquals(this.values, queryKey.values);
     }
 
     @Override
@@ -208,6 +242,11 @@ public final class QueryKey {
 
     @Override
     public String toString() {
-        return this.readableCondition;
+        String readable = this.readableCondition;
+        if (readable == null) {
+            readable = this.buildReadableCondition();
+            this.readableCondition = readable;
+        }
+        return readable;
     }
 }
@@ -0,0 +1,19 @@
+package com.tty.api.enumType;
+
+/**
+ * 有界执行器队列已满时的处理方式
+ */
+public enum OverflowPolicy {
+    /**
+     * 拒绝新任务，返回失败的 future
+     */
+    REJECT,
+    /**
+     * 在提交任务的线程中直接执行新任务
+     */
+    CALLER_RUNS,
+    /**
+     * 丢弃队列中优先级最低且最早提交的任务（返回失败的 future），为新任务腾出位置；排队任务的优先级都高于新任务时拒绝新任务
+     */
+    DROP_OLDEST
+}
@@ -0,0 +1,19 @@
+package com.tty.api.enumType;
+
+/**
+ * 同步模式下在服务器 tick 线程中访问数据库时的处理方式
+ */
+public enum SyncGuardMode {
+    /**
+     * 不检测，直接在调用线程执行
+     */
+    OFF,
+    /**
+     * 仍在调用线程执行，每个调用位置第一次调用时输出调用栈，之后只输出超过预算的耗时警告
+     */
+    WARN,
+    /**
+     * 自动转交给数据库执行器，调用线程不再阻塞
+     */
+    OFFLOAD
+}
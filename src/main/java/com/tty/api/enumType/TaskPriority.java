@@ -0,0 +1,19 @@
+package com.tty.api.enumType;
+
+/**
+ * 数据库任务优先级，执行器空闲时优先取出高优先级的任务，同一优先级按提交顺序执行
+ */
+public enum TaskPriority {
+    /**
+     * 单个实体查询等玩家正在等待的请求
+     */
+    HIGH,
+    /**
+     * 默认优先级，例如分页查询
+     */
+    NORMAL,
+    /**
+     * 后台刷新、预加载等无人等待的请求
+     */
+    LOW
+}
@@ -1,6 +1,8 @@
 package com.tty.api.gui;
 
 import com.tty.api.AbstractJavaPlugin;
+import com.tty.api.dto.CursorPage;
+import com.tty.api.dto.PageCursor;
 import com.tty.api.dto.PageResult;
 import com.tty.api.dto.gui.BaseDataMenu;
 import com.tty.api.dto.gui.PageDisable;
@@ -15,6 +17,8 @@ import org.bukkit.inventory.meta.ItemMeta;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
@@ -34,6 +38,11 @@ public abstract class BaseDataItemConfigInventory<T> extends BaseConfigInventory
 
     private volatile CompletableFuture<PageResult<T>> currentRequest;
 
+    // 游标模式下当前页的起始游标，以及之前各页的起始游标（用于上一页）
+    private PageCursor<T> currentCursor;
+    private final Deque<PageCursor<T>> cursorHistory = new ArrayDeque<>();
+    private CursorPage<T> lastCursorPage;
+
     public BaseDataItemConfigInventory(AbstractJavaPlugin plugin, Player player) {
         super(plugin, player);
     }
@@ -41,6 +50,7 @@ public abstract class BaseDataItemConfigInventory<T> extends BaseConfigInventory
     @Override
     protected void whenRenderComplete(@NotNull Inventory inventory) {
         this.cachePageButtons();
+        this.currentCursor = this.firstCursor();
         this.requestAndAccept(this::applyPageResult);
     }
 
@@ -66,24 +76,67 @@ public abstract class BaseDataItemConfigInventory<T> extends BaseConfigInventory
 
     public void prev() {
         if (this.loading || this.pageNum <= 1) return;
+        if (this.isCursorMode()) {
+            if (this.cursorHistory.isEmpty()) return;
+            this.currentCursor = this.cursorHistory.pop();
+        }
         this.pageNum--;
         this.requestAndAccept(this::applyPageResult);
     }
 
     public void next() {
         if (this.loading) return;
-        if (this.lastPageResult != null && this.pageNum >= this.lastPageResult.totalPages()) return;
+        if (this.isCursorMode()) {
+            if (this.lastCursorPage == null || !this.lastCursorPage.hasMore()) return;
+            this.cursorHistory.push(this.currentCursor);
+            this.currentCursor = this.lastCursorPage.next();
+        } else if (this.lastPageResult != null && this.pageNum >= this.lastPageResult.totalPages()) {
+            return;
+        }
         this.pageNum++;
         this.requestAndAccept(this::applyPageResult);
     }
 
     protected abstract CompletableFuture<PageResult<T>> requestData();
 
+    /**
+     * 返回第一页的游标即可开启游标分页模式，翻页通过 requestCursorData 按游标查询，不再使用 OFFSET
+     * @return 第一页游标，默认 null 表示使用页码分页
+     */
+    @Nullable
+    protected PageCursor<T> firstCursor() {
+        return null;
+    }
+
+    /**
+     * 游标分页模式下按游标请求数据，例如 EntityRepository#getListAfter
+     * @param cursor 当前页的起始游标
+     * @return 当前页数据与下一页游标
+     */
+    protected CompletableFuture<CursorPage<T>> requestCursorData(PageCursor<T> cursor) {
+        return null;
+    }
+
     @NotNull
     protected abstract List<ItemStack> beforeRenderDataItem(List<T> data);
 
+    protected boolean isCursorMode() {
+        return this.currentCursor != null;
+    }
+
+    private CompletableFuture<PageResult<T>> requestPage() {
+        if (!this.isCursorMode()) return this.requestData();
+        CompletableFuture<CursorPage<T>> future = this.requestCursorData(this.currentCursor);
+        if (future == null) return null;
+        int page = this.pageNum;
+        return future.thenApply(cursorPage -> {
+            this.lastCursorPage = cursorPage;
+            return PageResult.build(cursorPage.records(), cursorPage.total(), -1, page);
+        });
+    }
+
     private void requestAndAccept(Consumer<PageResult<T>> consumer) {
-        CompletableFuture<PageResult<T>> future = this.requestData();
+        CompletableFuture<PageResult<T>> future = this.requestPage();
         if (future == null) {
             consumer.accept(PageResult.build(List.of(), 0, 0, this.pageNum));
             return;
@@ -139,7 +192,12 @@ public abstract class BaseDataItemConfigInventory<T> extends BaseConfigInventory
         long total = result.totalPages();
 
         boolean disablePrev = this.pageNum <= 1;
-        boolean disableNext = total <= 1 || this.pageNum >= total;
+        boolean disableNext;
+        if (this.isCursorMode()) {
+            disableNext = this.lastCursorPage == null || !this.lastCursorPage.hasMore();
+        } else {
+            disableNext = total <= 1 || this.pageNum >= total;
+        }
 
         this.updateFunction(this.prevSlots, this.prevOrigin, disablePrev);
         this.updateFunction(this.nextSlots, this.nextOrigin, disableNext);
@@ -190,6 +248,8 @@ public abstract class BaseDataItemConfigInventory<T> extends BaseConfigInventory
         }
         this.currentRequest = null;
         this.lastPageResult = null;
+        this.lastCursorPage = null;
+        this.cursorHistory.clear();
         this.prevOrigin = null;
         this.nextOrigin = null;
         this.prevSlots = null;
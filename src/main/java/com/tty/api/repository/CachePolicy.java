@@ -0,0 +1,97 @@
+package com.tty.api.repository;
+
+import com.tty.api.configuration.BaseConfiguration;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.function.ToIntFunction;
+
+/**
+ * 仓库缓存策略
+ * 超过 refreshAfterWrite 的条目仍会被立即返回，同时在后台重新加载（与正常加载共享进行中的任务）；
+ * 超过 expireAfterWrite 的条目被淘汰，下一次读取需要等待数据库查询
+ * @param entityMaximum 实体缓存容量，设置 weigher 时表示最大权重
+ * @param pageMaximum 分页缓存容量，设置 weigher 时表示最大权重（一页的权重为其中实体权重之和）
+ * @param weigher 实体权重计算函数，为 null 时按条目数计算容量
+ * @param expireAfterWrite 写入后过期时间
+ * @param refreshAfterWrite 写入后开始后台刷新的时间，为 null 时不刷新；必须为正数且小于 expireAfterWrite
+ */
+public record CachePolicy(long entityMaximum, long pageMaximum, @Nullable ToIntFunction<Object> weigher, @NotNull Duration expireAfterWrite, @Nullable Duration refreshAfterWrite) {
+
+    public CachePolicy {
+        if (entityMaximum < 0 || pageMaximum < 0) {
+            throw new IllegalArgumentException("cache maximum must not be negative");
+        }
+        if (expireAfterWrite.isNegative() || expireAfterWrite.isZero()) {
+            throw new IllegalArgumentException("expireAfterWrite must be positive");
+        }
+        if (refreshAfterWrite != null && (refreshAfterWrite.isNegative() || refreshAfterWrite.isZero())) {
+            throw new IllegalArgumentException("refreshAfterWrite must be positive");
+        }
+        if (refreshAfterWrite != null && refreshAfterWrite.compareTo(expireAfterWrite) >= 0) {
+            throw new IllegalArgumentException("refreshAfterWrite (" + refreshAfterWrite + ") must be less than expireAfterWrite (" + expireAfterWrite + ")");
+        }
+    }
+
+    /**
+     * 默认策略，与原先固定的缓存参数一致：实体 2000 条，分页 200 条，300 分钟过期，不刷新
+     * @return 默认策略
+     */
+    public static CachePolicy defaults() {
+        return new CachePolicy(2000, 200, null, Duration.ofMinutes(300), null);
+    }
+
+    /**
+     * 从配置文件读取缓存策略，未配置的项使用默认值
+     * <pre>
+     * path:
+     *   entity-max-size: 2000
+     *   page-max-size: 200
+     *   expire-after-write-seconds: 18000
+     *   refresh-after-write-seconds: 0   # 0 表示不刷新
+     * </pre>
+     * @param configuration 配置文件
+     * @param path 配置节点路径
+     * @return 缓存策略
+     * @throws IllegalArgumentException 配置值无效时抛出，信息中包含对应的配置路径
+     */
+    public static CachePolicy fromConfig(@NotNull BaseConfiguration configuration, @NotNull String path) {
+        CachePolicy defaults = defaults();
+        String prefix = path.isEmpty() ? "" : path + ".";
+        int expire = configuration.getInt(prefix + "expire-after-write-seconds", (int) defaults.expireAfterWrite().toSeconds());
+        int refresh = configuration.getInt(prefix + "refresh-after-write-seconds", 0);
+        if (expire <= 0) {
+            throw new IllegalArgumentException(prefix + "expire-after-write-seconds must be positive, got " + expire);
+        }
+        if (refresh < 0 || refresh >= expire) {
+            throw new IllegalArgumentException(prefix + "refresh-after-write-seconds must be 0 (disabled) or between 1 and "
+                    + prefix + "expire-after-write-seconds (" + expire + ") exclusive, got " + refresh);
+        }
+        return new CachePolicy(
+                configuration.getInt(prefix + "entity-max-size", (int) defaults.entityMaximum()),
+                configuration.getInt(prefix + "page-max-size", (int) defaults.pageMaximum()),
+                null,
+                Duration.ofSeconds(expire),
+                refresh > 0 ? Duration.ofSeconds(refresh) : null
+        );
+    }
+
+    public CachePolicy withWeigher(@Nullable ToIntFunction<Object> weigher) {
+        return new CachePolicy(this.entityMaximum, this.pageMaximum, weigher, this.expireAfterWrite, this.refreshAfterWrite);
+    }
+
+    public CachePolicy withRefreshAfterWrite(@Nullable Duration refreshAfterWrite) {
+        return new CachePolicy(this.entityMaximum, this.pageMaximum, this.weigher, this.expireAfterWrite, refreshAfterWrite);
+    }
+
+    /**
+     * 判断已存在的时长是否需要后台刷新
+     * @param age 条目已存在的时长
+     * @return 是否需要刷新
+     */
+    boolean shouldRefresh(Duration age) {
+        return this.refreshAfterWrite != null && age.compareTo(this.refreshAfterWrite) >= 0;
+    }
+
+}
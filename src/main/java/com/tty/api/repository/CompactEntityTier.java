@@ -0,0 +1,123 @@
+package com.tty.api.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 实体的紧凑二级缓存
+ * 实体缓存因容量被淘汰的实体以 JSON 字节的形式保存在这里（可选堆外 DirectByteBuffer），
+ * 按主键再次访问时解码并提升回实体缓存。容量按字节计算
+ */
+final class CompactEntityTier<T> {
+
+    // 每个条目除数据外的估计开销（键、节点与包装对象）
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final Class<T> entityClass;
+    private final boolean offHeap;
+    private final Cache<PartitionedKey<FieldKey>, Object> store;
+
+    private final AtomicLong bytes = new AtomicLong();
+    private final LongAdder demotions = new LongAdder();
+    private final LongAdder promotions = new LongAdder();
+    private final LongAdder codecFailures = new LongAdder();
+
+    CompactEntityTier(@NotNull Class<T> entityClass, long maxBytes, @NotNull Duration expireAfterWrite, boolean offHeap) {
+        this.entityClass = entityClass;
+        this.offHeap = offHeap;
+        this.store = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .<PartitionedKey<FieldKey>, Object>weigher((key, value) -> sizeOf(value) + ENTRY_OVERHEAD)
+                .expireAfterWrite(expireAfterWrite)
+                .removalListener((key, value, cause) -> {
+                    if (value != null) this.bytes.addAndGet(-sizeOf(value));
+                })
+                .build();
+    }
+
+    /**
+     * 将实体编码后存入紧凑层
+     * @param key 主键索引键
+     * @param entity 实体
+     */
+    void demote(PartitionedKey<FieldKey> key, T entity) {
+        byte[] encoded;
+        try {
+            encoded = EntityJson.GSON.toJson(entity).getBytes(StandardCharsets.UTF_8);
+        } catch (RuntimeException e) {
+            this.codecFailures.increment();
+            return;
+        }
+        Object value = encoded;
+        if (this.offHeap) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(encoded.length);
+            buffer.put(encoded).flip();
+            value = buffer;
+        }
+        this.bytes.addAndGet(encoded.length);
+        this.store.put(key, value);
+        this.demotions.increment();
+    }
+
+    /**
+     * 取出并解码实体，取出后该条目从紧凑层移除
+     * @param key 主键索引键
+     * @return 实体，不存在或解码失败时为 null
+     */
+    @Nullable
+    T promote(PartitionedKey<FieldKey> key) {
+        Object value = this.store.asMap().remove(key);
+        if (value == null) return null;
+        byte[] encoded;
+        if (value instanceof ByteBuffer buffer) {
+            encoded = new byte[buffer.remaining()];
+            buffer.duplicate().get(encoded);
+        } else {
+            encoded = (byte[]) value;
+        }
+        try {
+            T entity = EntityJson.GSON.fromJson(new String(encoded, StandardCharsets.UTF_8), this.entityClass);
+            this.promotions.increment();
+            return entity;
+        } catch (RuntimeException e) {
+            this.codecFailures.increment();
+            return null;
+        }
+    }
+
+    void invalidate(PartitionedKey<FieldKey> key) {
+        this.store.invalidate(key);
+    }
+
+    void invalidatePartition(PartitionKey partition) {
+        this.store.asMap().keySet().removeIf(key -> partition.equals(key.partition()));
+    }
+
+    void clear() {
+        this.store.invalidateAll();
+    }
+
+    CompactTierStats stats() {
+        return new CompactTierStats(
+                this.store.estimatedSize(),
+                Math.max(0, this.bytes.get()),
+                this.offHeap,
+                this.demotions.sum(),
+                this.promotions.sum(),
+                this.codecFailures.sum()
+        );
+    }
+
+    private static int sizeOf(Object value) {
+        return value instanceof ByteBuffer buffer ? buffer.capacity() : ((byte[]) value).length;
+    }
+
+}
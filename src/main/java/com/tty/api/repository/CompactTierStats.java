@@ -0,0 +1,13 @@
+package com.tty.api.repository;
+
+/**
+ * 紧凑缓存层的运行状态
+ * @param entries 当前条目数
+ * @param bytes 当前占用的字节数（不含键）
+ * @param offHeap 是否存放在堆外内存
+ * @param demotions 从实体缓存降级到紧凑层的次数
+ * @param promotions 从紧凑层提升回实体缓存的次数
+ * @param codecFailures 编码或解码失败的次数
+ */
+public record CompactTierStats(long entries, long bytes, boolean offHeap, long demotions, long promotions, long codecFailures) {
+}
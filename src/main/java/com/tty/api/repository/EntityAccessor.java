@@ -0,0 +1,194 @@
+package com.tty.api.repository;
+
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.tty.api.annotations.cache.CacheKey;
+import com.tty.api.dto.QueryKey;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 实体访问器，每个实体类只构建一次
+ * 预先计算主键与 @CacheKey 字段的列名，并通过 MethodHandle 读取字段值，缓存读写时不再进行反射和字符串转换
+ */
+final class EntityAccessor {
+
+    private static final Map<Class<?>, EntityAccessor> ACCESSOR_CACHE = new ConcurrentHashMap<>();
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final Class<?> entityClass;
+
+    @Nullable
+    private final Property primaryKey;
+
+    private final List<Property> cacheKeys;
+
+    // TableInfo 是否已被 MyBatis-Plus 初始化，未初始化的访问器同样缓存，TableInfo 初始化后再重新构建
+    private final boolean resolved;
+
+    private EntityAccessor(Class<?> entityClass) {
+        this.entityClass = entityClass;
+        TableInfo tableInfo = TableInfoHelper.getTableInfo(entityClass);
+        this.resolved = tableInfo != null;
+
+        Property pk = null;
+        if (tableInfo != null && tableInfo.getKeyProperty() != null && tableInfo.getKeyColumn() != null) {
+            Field field = findField(entityClass, tableInfo.getKeyProperty());
+            if (field != null) {
+                pk = Property.of(entityClass, field, tableInfo.getKeyColumn());
+            }
+        }
+        this.primaryKey = pk;
+
+        List<Property> keys = new ArrayList<>();
+        Class<?> current = entityClass;
+        while (current != null && current != Object.class) {
+            for (Field field : current.getDeclaredFields()) {
+                if (field.isAnnotationPresent(CacheKey.class)) {
+                    keys.add(Property.of(entityClass, field, resolveColumn(tableInfo, field.getName())));
+                }
+            }
+            current = current.getSuperclass();
+        }
+        this.cacheKeys = Collections.unmodifiableList(keys);
+    }
+
+    static EntityAccessor of(Class<?> entityClass) {
+        EntityAccessor accessor = ACCESSOR_CACHE.get(entityClass);
+        // 未解析时只检查一次 TableInfo 是否已初始化，不再每次反射扫描字段
+        if (accessor != null && (accessor.resolved || TableInfoHelper.getTableInfo(entityClass) == null)) return accessor;
+        return ACCESSOR_CACHE.merge(entityClass, new EntityAccessor(entityClass), (cached, built) -> cached.resolved ? cached : built);
+    }
+
+    Class<?> entityClass() {
+        return this.entityClass;
+    }
+
+    @Nullable
+    Property primaryKey() {
+        return this.primaryKey;
+    }
+
+    List<Property> cacheKeys() {
+        return this.cacheKeys;
+    }
+
+    /**
+     * 根据属性名查找 @CacheKey 字段
+     * @param name 属性名
+     * @return 字段访问器，不存在时为 null
+     */
+    @Nullable
+    Property cacheKey(String name) {
+        for (Property property : this.cacheKeys) {
+            if (property.name().equals(name)) return property;
+        }
+        return null;
+    }
+
+    private static String resolveColumn(@Nullable TableInfo tableInfo, String property) {
+        if (tableInfo != null) {
+            for (TableFieldInfo fieldInfo : tableInfo.getFieldList()) {
+                if (fieldInfo.getProperty().equals(property)) {
+                    return fieldInfo.getColumn();
+                }
+            }
+        }
+        return camelToUnderline(property);
+    }
+
+    @Nullable
+    private static Field findField(Class<?> clazz, String name) {
+        Class<?> current = clazz;
+        while (current != null && current != Object.class) {
+            try {
+                return current.getDeclaredField(name);
+            } catch (NoSuchFieldException e) {
+                current = current.getSuperclass();
+            }
+        }
+        return null;
+    }
+
+    private static MethodHandle toGetter(Field field) {
+        try {
+            field.setAccessible(true);
+            return MethodHandles.lookup().unreflectGetter(field).asType(GETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("could not access field " + field.getName() + " of " + field.getDeclaringClass().getName(), e);
+        }
+    }
+
+    /**
+     * 驼峰转下划线
+     * @param name 字符串
+     * @return 处理过后的返回值
+     */
+    static String camelToUnderline(String name) {
+        if (name == null || name.isEmpty()) return name;
+        StringBuilder result = new StringBuilder();
+        result.append(Character.toLowerCase(name.charAt(0)));
+        for (int i = 1; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c)) {
+                if (Character.isLowerCase(name.charAt(i - 1))) {
+                    result.append('_');
+                }
+                result.append(Character.toLowerCase(c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * 单个字段的访问器
+     * @param entityClass 所属实体类
+     * @param name 属性名
+     * @param column 列名
+     * @param segment 预先构建的 column = ? 归一化片段
+     * @param getter 字段读取句柄
+     */
+    record Property(Class<?> entityClass, String name, String column, String segment, MethodHandle getter) {
+
+        static Property of(Class<?> entityClass, Field field, String column) {
+            return new Property(entityClass, field.getName(), column, QueryKey.equalsSegment(column), toGetter(field));
+        }
+
+        @Nullable
+        Object get(Object entity) {
+            try {
+                return (Object) this.getter.invokeExact(entity);
+            } catch (Throwable e) {
+                throw new IllegalStateException("could not read field " + this.name + " of " + this.entityClass.getName(), e);
+            }
+        }
+
+        /**
+         * 构建该字段等值查询的查询键，与 column = value 的 LambdaQueryWrapper 生成的键一致
+         * @param value 字段值
+         * @return 查询键
+         */
+        QueryKey queryKey(Object value) {
+            return QueryKey.ofSegment(this.entityClass, this.segment, value);
+        }
+
+        FieldKey fieldKey(Object value) {
+            return new FieldKey(this.name, value);
+        }
+
+    }
+
+}
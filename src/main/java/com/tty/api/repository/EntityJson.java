@@ -0,0 +1,96 @@
+package com.tty.api.repository;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.*;
+import java.util.Date;
+import java.util.function.Function;
+
+/**
+ * 紧凑二级缓存与预热快照共用的实体 JSON 编解码
+ * Java 17+ 的模块限制使 Gson 无法反射访问 java.time 类型的私有字段，这里为常用的时间类型注册基于 ISO-8601 字符串的适配器；
+ * Date 及其 java.sql 子类按毫秒时间戳存储（Timestamp 保留纳秒），不依赖 JDK 的默认日期格式
+ */
+final class EntityJson {
+
+    static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(LocalDateTime.class, iso(LocalDateTime::parse))
+            .registerTypeAdapter(LocalDate.class, iso(LocalDate::parse))
+            .registerTypeAdapter(LocalTime.class, iso(LocalTime::parse))
+            .registerTypeAdapter(Instant.class, iso(Instant::parse))
+            .registerTypeAdapter(OffsetDateTime.class, iso(OffsetDateTime::parse))
+            .registerTypeAdapter(ZonedDateTime.class, iso(ZonedDateTime::parse))
+            .registerTypeAdapter(Duration.class, iso(Duration::parse))
+            .registerTypeAdapterFactory(new DateAdapterFactory())
+            .create();
+
+    private EntityJson() {
+    }
+
+    private static <V> TypeAdapter<V> iso(Function<String, V> parser) {
+        return text(Object::toString, parser);
+    }
+
+    private static <V> TypeAdapter<V> text(Function<V, String> formatter, Function<String, V> parser) {
+        return new TypeAdapter<V>() {
+            @Override
+            public void write(JsonWriter out, V value) throws IOException {
+                out.value(formatter.apply(value));
+            }
+
+            @Override
+            public V read(JsonReader in) throws IOException {
+                return parser.apply(in.nextString());
+            }
+        }.nullSafe();
+    }
+
+    private static final class DateAdapterFactory implements TypeAdapterFactory {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <V> TypeAdapter<V> create(Gson gson, TypeToken<V> type) {
+            Class<? super V> raw = type.getRawType();
+            if (raw == Timestamp.class) {
+                TypeAdapter<Timestamp> adapter = text(timestamp -> timestamp.toInstant().toString(), text -> Timestamp.from(Instant.parse(text)));
+                return (TypeAdapter<V>) adapter;
+            }
+            if (!Date.class.isAssignableFrom(raw)) return null;
+            Function<Long, Date> factory;
+            if (raw == java.sql.Date.class) {
+                factory = java.sql.Date::new;
+            } else if (raw == java.sql.Time.class) {
+                factory = java.sql.Time::new;
+            } else if (raw == Date.class) {
+                factory = Date::new;
+            } else {
+                return null;
+            }
+            return (TypeAdapter<V>) new TypeAdapter<Date>() {
+                @Override
+                public void write(JsonWriter out, Date value) throws IOException {
+                    out.value(value.getTime());
+                }
+
+                @Override
+                public Date read(JsonReader in) throws IOException {
+                    if (in.peek() == JsonToken.STRING) {
+                        return factory.apply(Long.parseLong(in.nextString()));
+                    }
+                    return factory.apply(in.nextLong());
+                }
+            }.nullSafe();
+        }
+
+    }
+
+}
@@ -1,34 +1,70 @@
 package com.tty.api.repository;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.core.metadata.TableInfo;
-import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.RemovalListener;
 import com.tty.api.AbstractJavaPlugin;
-import com.tty.api.annotations.cache.CacheKey;
+import com.tty.api.Log;
+import com.tty.api.configuration.BaseConfiguration;
+import com.tty.api.dto.CursorPage;
+import com.tty.api.dto.PageCursor;
 import com.tty.api.dto.PageResult;
 import com.tty.api.dto.QueryKey;
+import com.tty.api.enumType.TaskPriority;
+import com.tty.api.repository.invalidation.InvalidationMessage;
+import com.tty.api.repository.invalidation.InvalidationTransport;
 import com.tty.api.utils.BaseDataManager;
+import com.tty.api.utils.DataExecutor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import java.lang.reflect.Field;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 public abstract class EntityRepository<T> {
 
+    // getAll 单次 IN 查询的最大主键数量
+    private static final int MULTI_GET_CHUNK_SIZE = 500;
+
+    // 指标中保留的热点键数量
+    private static final int HOT_KEY_COUNT = 10;
+
+    // 单条失效消息携带的最大键数量，超过后改为使整个分区失效
+    private static final int MAX_REMOTE_KEYS = 256;
+
+    // 按主键 / @CacheKey 查询的不存在结果不依赖分区代数
+    private static final long EXACT_MISSING = -1L;
+
     private final AbstractJavaPlugin plugin;
     protected final BaseDataManager<T> manager;
 
+    // 缓存策略
+    private final CachePolicy cachePolicy;
+
     // 实体缓存，键为分区+查询条件，值为单个实体
-    private final Cache<@NotNull PartitionedKey<QueryKey>, T> entityCache = Caffeine.newBuilder().maximumSize(2000).expireAfterWrite(300, TimeUnit.MINUTES).build();
+    private final Cache<@NotNull PartitionedKey<QueryKey>, T> entityCache;
+
+    // 分页缓存，键为分区+分页条件+分区代数，值为分页结果，旧代数的键由正常过期淘汰
+    private final Cache<@NotNull PartitionedKey<PageKey<QueryKey>>, PageResult<T>> pageCache;
+
+    // 分区代数，写操作递增后该分区的分页缓存全部失效
+    private final PartitionGenerations generations = new PartitionGenerations();
 
-    // 分页缓存，键为分区+分页条件，值为分页结果
-    private final Cache<@NotNull PartitionedKey<PageKey<QueryKey>>, PageResult<T>> pageCache = Caffeine.newBuilder().maximumSize(200).expireAfterWrite(300, TimeUnit.MINUTES).build();
+    // 按键记录的写入时钟，加载完成后只检查结果实体自身的键是否在加载期间被写入
+    private final KeyVersions versions = new KeyVersions();
+
+    // 主键/缓存键直接索引，键为分区+字段名+字段值，命中时无需构建查询条件
+    private final Cache<@NotNull PartitionedKey<FieldKey>, T> idCache;
 
     // 正在进行的实体加载任务，用于防止缓存击穿
     private final ConcurrentHashMap<PartitionedKey<QueryKey>, CompletableFuture<T>> pendingEntityFutures = new ConcurrentHashMap<>();
@@ -36,18 +72,79 @@ public abstract class EntityRepository<T> {
     // 正在进行的分页加载任务，用于防止缓存击穿
     private final ConcurrentHashMap<PartitionedKey<PageKey<QueryKey>>, CompletableFuture<PageResult<T>>> pendingPageFutures = new ConcurrentHashMap<>();
 
-    // 缓存实体类的主键 Field，避免重复反射
-    private static final Map<Class<?>, Field> PK_FIELD_CACHE = new ConcurrentHashMap<>();
+    // 不存在结果缓存，值为记录时分区的代数，代数变化后条目失效；按主键 / @CacheKey 查询的条目值为 EXACT_MISSING，
+    // 只在该键的实体被写入时失效；未开启时为 null
+    private volatile Cache<@NotNull PartitionedKey<QueryKey>, Long> negativeCache;
+    private final LongAdder negativeHits = new LongAdder();
+
+    // 复用进行中加载任务的请求数与后台刷新次数
+    private final LongAdder coalescedLoads = new LongAdder();
+    private final LongAdder backgroundRefreshes = new LongAdder();
+
+    // 热点查询键统计
+    private final HotKeySketch hotKeys = new HotKeySketch(HOT_KEY_COUNT);
+
+    // 按分区限制并发加载数，未开启时为 null
+    private volatile PartitionBulkhead bulkhead;
+
+    // 延迟写入队列，未开启时为 null
+    private volatile WriteBehindQueue<T> writeBehind;
+
+    // 关闭时写入预热快照的最大条目数，0 表示不写入
+    private volatile int snapshotSize;
 
-    // 缓存实体类中被 @CacheKey 标记的字段列表
-    private static final Map<Class<?>, List<Field>> CACHE_KEY_FIELDS_CACHE = new ConcurrentHashMap<>();
+    // 紧凑二级缓存，未开启时为 null
+    private volatile CompactEntityTier<T> compactTier;
+
+    // 跨服务器失效消息传输，未开启时为 null
+    private volatile InvalidationTransport invalidationTransport;
+    private volatile InvalidationTransport.Subscription invalidationSubscription;
+
+    // 仓库对应的实体类型，由泛型参数解析，无法解析时为 null
+    private final Class<T> entityClass = this.resolveEntityClass();
+
+    // 调试日志中的调用方名称
+    private final String logName = this.getClass().getName();
 
     public EntityRepository(AbstractJavaPlugin plugin, BaseDataManager<T> manager) {
+        this(plugin, manager, CachePolicy.defaults());
+    }
+
+    public EntityRepository(AbstractJavaPlugin plugin, BaseDataManager<T> manager, @NotNull CachePolicy cachePolicy) {
         this.plugin = plugin;
         this.manager = manager;
+        this.cachePolicy = cachePolicy;
+
+        ToIntFunction<Object> weigher = cachePolicy.weigher();
+        ToIntFunction<T> entityWeigher = weigher == null ? null : weigher::applyAsInt;
+        ToIntFunction<PageResult<T>> pageWeigher = weigher == null ? null : page -> {
+            int weight = 1;
+            for (T record : page.records()) {
+                weight += weigher.applyAsInt(record);
+            }
+            return weight;
+        };
+        this.entityCache = this.buildCache(cachePolicy.entityMaximum(), entityWeigher, null);
+        this.pageCache = this.buildCache(cachePolicy.pageMaximum(), pageWeigher, null);
+        this.idCache = this.buildCache(cachePolicy.entityMaximum(), entityWeigher, this::demote);
+
         this.debug("EntityRepository initialized with manager: {}", manager != null ? manager.getClass().getSimpleName() : "null");
     }
 
+    @SuppressWarnings("unchecked")
+    private <K, V> Cache<K, V> buildCache(long maximum, @Nullable ToIntFunction<V> weigher, @Nullable RemovalListener<K, V> evictionListener) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().expireAfterWrite(this.cachePolicy.expireAfterWrite()).recordStats();
+        if (weigher == null) {
+            builder.maximumSize(maximum);
+        } else {
+            builder.maximumWeight(maximum).weigher((key, value) -> Math.max(0, weigher.applyAsInt((V) value)));
+        }
+        if (evictionListener == null) {
+            return builder.build();
+        }
+        return builder.<K, V>evictionListener(evictionListener).build();
+    }
+
     /**
      * 根据同步还是异步自动返回调度器
      * @return 调度器
@@ -57,18 +154,36 @@ public abstract class EntityRepository<T> {
     }
     
     public CompletableFuture<@Nullable T> get(LambdaQueryWrapper<T> key, PartitionKey partition) {
+        return this.get(key, partition, TaskPriority.HIGH, null);
+    }
+
+    /**
+     * 按查询条件获取实体
+     * @param exactKey 查询条件为单个主键 / @CacheKey 等值条件时对应的键，不存在结果只随该键的写入失效；其它查询条件为 null
+     */
+    private CompletableFuture<@Nullable T> get(LambdaQueryWrapper<T> key, PartitionKey partition, TaskPriority priority, @Nullable FieldKey exactKey) {
         QueryKey queryKey = QueryKey.of(key);
         PartitionedKey<QueryKey> pKey = new PartitionedKey<>(partition, queryKey);
+        this.hotKeys.record(pKey);
 
         T cached = this.entityCache.getIfPresent(pKey);
         if (cached != null) {
             this.debug("Entity cache hit: {}", pKey);
+            if (this.isStale(this.entityCache, pKey)) {
+                this.refreshEntity(pKey, key, partition, cached, exactKey);
+            }
             return CompletableFuture.completedFuture(cached);
         }
 
+        if (this.isKnownMissing(pKey, partition)) {
+            this.debug("Negative cache hit: {}", pKey);
+            return CompletableFuture.completedFuture(null);
+        }
+
         CompletableFuture<T> pending = this.pendingEntityFutures.get(pKey);
         if (pending != null) {
             this.debug("Entity pending future found: {}", pKey);
+            this.coalescedLoads.increment();
             return pending;
         }
 
@@ -76,6 +191,7 @@ public abstract class EntityRepository<T> {
         CompletableFuture<T> existing = this.pendingEntityFutures.putIfAbsent(pKey, newFuture);
         if (existing != null) {
             this.debug("Entity pending future (race) found: {}", pKey);
+            this.coalescedLoads.increment();
             return existing;
         }
 
@@ -86,21 +202,372 @@ public abstract class EntityRepository<T> {
             return newFuture;
         }
 
-        this.manager.get(key).whenCompleteAsync((entity, throwable) -> {
+        this.loadEntity(pKey, key, partition, newFuture, priority, null, exactKey);
+        return newFuture;
+    }
+
+    /**
+     * 从数据库加载实体并写入缓存
+     * @param stale 后台刷新时缓存中的旧实体，实体已被删除时用它移除所有相关键，普通加载时为 null
+     * @param exactKey 查询条件对应的主键 / @CacheKey 键，其它查询条件为 null
+     */
+    private void loadEntity(PartitionedKey<QueryKey> pKey, LambdaQueryWrapper<T> key, PartitionKey partition, CompletableFuture<T> newFuture, TaskPriority priority, @Nullable T stale, @Nullable FieldKey exactKey) {
+        long since = this.versions.now();
+        long generation = this.generations.current(partition);
+        this.load(partition, priority, () -> this.manager.get(key)).whenCompleteAsync((entity, throwable) -> {
             if (throwable != null) {
                 this.debug("Error loading entity for key {}: {}", pKey, throwable.getMessage());
                 newFuture.completeExceptionally(throwable);
             } else {
-                if (entity != null) {
-                    // 缓存实体到所有可能的键
-                    this.cacheEntity(entity, partition);
+                T latest = this.overlayPendingWrite(entity);
+                if (latest != null) {
+                    // 加载期间实体自身的键被写入时结果可能已过期，不再放入缓存
+                    if (this.isStable(latest, partition, since, generation)) {
+                        // @CacheKey 字段可能已变化，先移除旧实体的键
+                        if (stale != null && stale != latest) this.invalidateEntityCaches(stale, partition);
+                        // 缓存实体到所有可能的键
+                        this.cacheEntity(latest, partition);
+                    }
+                } else {
+                    // 后台刷新时实体已被删除，移除旧实体的所有键，包括主键索引与其它 @CacheKey 键
+                    T previous = stale != null ? stale : this.entityCache.getIfPresent(pKey);
+                    this.entityCache.invalidate(pKey);
+                    if (previous != null) this.invalidateEntityCaches(previous, partition);
+                    if (exactKey != null) {
+                        if (this.versions.isStable(partition, List.of(exactKey), since)) this.rememberMissing(pKey, EXACT_MISSING);
+                    } else if (this.generations.isStable(partition, generation)) {
+                        this.rememberMissing(pKey, generation);
+                    }
                 }
-                newFuture.complete(entity);
+                newFuture.complete(latest);
             }
             this.pendingEntityFutures.remove(pKey, newFuture);
         }, this.getAutoExecutor());
+    }
 
-        return newFuture;
+    /**
+     * 在分区并发限制内以指定优先级执行数据库加载
+     * @param partition 分区键
+     * @param priority 优先级
+     * @param load 加载任务
+     * @return 加载结果
+     */
+    private <R> CompletableFuture<R> load(PartitionKey partition, TaskPriority priority, Supplier<CompletableFuture<R>> load) {
+        Supplier<CompletableFuture<R>> prioritized = () -> DataExecutor.withPriority(priority, load);
+        PartitionBulkhead current = this.bulkhead;
+        return current == null ? prioritized.get() : current.submit(partition, priority, prioritized);
+    }
+
+    /**
+     * 开启分区并发限制
+     * 每个分区同时进行的数据库加载数不超过上限，其余加载在仓库内排队，单个分区的大量请求不会占满数据库执行器的队列
+     * @param maxConcurrentLoads 每个分区的最大并发加载数
+     */
+    public synchronized void enablePartitionBulkhead(int maxConcurrentLoads) {
+        if (this.bulkhead != null) {
+            throw new IllegalStateException("partition bulkhead already enabled");
+        }
+        this.bulkhead = new PartitionBulkhead(maxConcurrentLoads, this.plugin.getExecutorAsync());
+        this.debug("partition bulkhead enabled, max concurrent loads: {}", maxConcurrentLoads);
+    }
+
+    /**
+     * 开启不存在结果缓存
+     * get 查询结果为 null 时记录该查询键，有效期内再次查询直接返回 null，不访问数据库。
+     * getById / getByCacheKey 的条目只在写入或收到失效消息的实体带有该键时失效；
+     * 其它查询条件的条目记录了当时分区的代数，同一分区发生任何写操作后失效
+     * @param ttl 有效期，应明显短于实体缓存的过期时间
+     * @param maximum 最大条目数
+     */
+    public synchronized void enableNegativeCache(@NotNull Duration ttl, long maximum) {
+        if (this.negativeCache != null) {
+            throw new IllegalStateException("negative cache already enabled");
+        }
+        this.negativeCache = Caffeine.newBuilder().expireAfterWrite(ttl).maximumSize(maximum).build();
+        this.debug("negative cache enabled, ttl: {}, maximum: {}", ttl, maximum);
+    }
+
+    private boolean isKnownMissing(PartitionedKey<QueryKey> pKey, PartitionKey partition) {
+        Cache<PartitionedKey<QueryKey>, Long> cache = this.negativeCache;
+        if (cache == null) return false;
+        Long generation = cache.getIfPresent(pKey);
+        if (generation == null) return false;
+        if (generation != EXACT_MISSING && generation != this.generations.current(partition)) {
+            cache.invalidate(pKey);
+            return false;
+        }
+        this.negativeHits.increment();
+        return true;
+    }
+
+    private void rememberMissing(PartitionedKey<QueryKey> pKey, long generation) {
+        Cache<PartitionedKey<QueryKey>, Long> cache = this.negativeCache;
+        if (cache != null) cache.put(pKey, generation);
+    }
+
+    /**
+     * 移除实体的主键 / @CacheKey 值对应的不存在结果
+     * @param entity 实体
+     * @param partition 分区键
+     */
+    private void forgetMissing(T entity, PartitionKey partition) {
+        Cache<PartitionedKey<QueryKey>, Long> cache = this.negativeCache;
+        if (cache == null || entity == null) return;
+        EntityAccessor accessor = EntityAccessor.of(entity.getClass());
+        EntityAccessor.Property pk = accessor.primaryKey();
+        Object id = pk == null ? null : pk.get(entity);
+        if (id != null) cache.invalidate(new PartitionedKey<>(partition, pk.queryKey(id)));
+        for (EntityAccessor.Property property : accessor.cacheKeys()) {
+            Object value = property.get(entity);
+            if (value != null) cache.invalidate(new PartitionedKey<>(partition, property.queryKey(value)));
+        }
+    }
+
+    /**
+     * 收集实体的主键与 @CacheKey 键
+     * @param entity 实体
+     * @return 键列表，实体为 null 时为空
+     */
+    private List<FieldKey> keysOf(@Nullable T entity) {
+        if (entity == null) return List.of();
+        EntityAccessor accessor = EntityAccessor.of(entity.getClass());
+        List<FieldKey> keys = new ArrayList<>(1 + accessor.cacheKeys().size());
+        EntityAccessor.Property pk = accessor.primaryKey();
+        Object id = pk == null ? null : pk.get(entity);
+        if (id != null) keys.add(pk.fieldKey(id));
+        for (EntityAccessor.Property property : accessor.cacheKeys()) {
+            Object value = property.get(entity);
+            if (value != null) keys.add(property.fieldKey(value));
+        }
+        return keys;
+    }
+
+    /**
+     * 判断加载结果能否写入缓存：实体的主键与 @CacheKey 键在加载期间都没有被写入；
+     * 实体没有任何键时退回到分区代数判断
+     * @param entity 加载结果
+     * @param partition 分区键
+     * @param since 加载开始时的时钟
+     * @param generation 加载开始时的分区代数
+     * @return 是否可以写入缓存
+     */
+    private boolean isStable(T entity, PartitionKey partition, long since, long generation) {
+        List<FieldKey> keys = this.keysOf(entity);
+        if (keys.isEmpty()) return this.generations.isStable(partition, generation);
+        return this.versions.isStable(partition, keys, since);
+    }
+
+    /**
+     * 后台重新加载已超过刷新时间的实体，调用方直接使用旧值，与正常加载共享进行中的任务
+     * @param pKey 缓存键
+     * @param key 查询条件
+     * @param partition 分区键
+     * @param stale 缓存中的旧实体
+     * @param exactKey 查询条件对应的主键 / @CacheKey 键，其它查询条件为 null
+     */
+    private void refreshEntity(PartitionedKey<QueryKey> pKey, LambdaQueryWrapper<T> key, PartitionKey partition, T stale, @Nullable FieldKey exactKey) {
+        if (this.manager == null) return;
+        CompletableFuture<T> newFuture = new CompletableFuture<>();
+        if (this.pendingEntityFutures.putIfAbsent(pKey, newFuture) != null) return;
+        this.debug("Entity cache stale: {}, refreshing in background", pKey);
+        this.backgroundRefreshes.increment();
+        this.plugin.getExecutorAsync().execute(() -> this.loadEntity(pKey, key, partition, newFuture, TaskPriority.LOW, stale, exactKey));
+    }
+
+    /**
+     * 判断缓存条目是否已超过刷新时间
+     * @param cache 缓存
+     * @param key 缓存键
+     * @return 是否需要后台刷新
+     */
+    private <K> boolean isStale(Cache<K, ?> cache, K key) {
+        if (this.cachePolicy.refreshAfterWrite() == null) return false;
+        return cache.policy().expireAfterWrite()
+                .flatMap(expiration -> expiration.ageOf(key))
+                .map(this.cachePolicy::shouldRefresh)
+                .orElse(false);
+    }
+
+    /**
+     * 根据主键获取实体，命中时只进行一次哈希查找，未命中时才构建查询条件
+     * @param id 主键值
+     * @param partition 分区键
+     * @return 实体，不存在时为 null
+     */
+    public CompletableFuture<@Nullable T> getById(Object id, PartitionKey partition) {
+        if (id == null) return CompletableFuture.completedFuture(null);
+        EntityAccessor.Property pk = this.entityClass == null ? null : EntityAccessor.of(this.entityClass).primaryKey();
+        if (pk == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("no primary key info for repository " + getClass().getSimpleName()));
+        }
+        return this.getByProperty(pk, id, partition);
+    }
+
+    /**
+     * 根据 @CacheKey 标记的字段获取实体，命中时只进行一次哈希查找，未命中时才构建查询条件
+     * @param field 被 @CacheKey 标记的属性名
+     * @param value 属性值
+     * @param partition 分区键
+     * @return 实体，不存在时为 null
+     */
+    public CompletableFuture<@Nullable T> getByCacheKey(String field, Object value, PartitionKey partition) {
+        if (value == null) return CompletableFuture.completedFuture(null);
+        if (this.entityClass == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("could not resolve entity class of repository " + getClass().getSimpleName()));
+        }
+        EntityAccessor.Property property = EntityAccessor.of(this.entityClass).cacheKey(field);
+        if (property == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("field " + field + " is not annotated with @CacheKey in " + this.entityClass.getSimpleName()));
+        }
+        return this.getByProperty(property, value, partition);
+    }
+
+    private CompletableFuture<@Nullable T> getByProperty(EntityAccessor.Property property, Object value, PartitionKey partition) {
+        PartitionedKey<FieldKey> fieldKey = new PartitionedKey<>(partition, property.fieldKey(value));
+        this.hotKeys.record(fieldKey);
+        T cached = this.idCache.getIfPresent(fieldKey);
+        if (cached != null) {
+            if (this.isStale(this.idCache, fieldKey)) {
+                this.refreshEntity(new PartitionedKey<>(partition, property.queryKey(value)), this.buildEqualsCondition(property, value), partition, cached, fieldKey.key());
+            }
+            return CompletableFuture.completedFuture(cached);
+        }
+        T promoted = this.promote(fieldKey, partition);
+        if (promoted != null) {
+            return CompletableFuture.completedFuture(promoted);
+        }
+        return this.get(this.buildEqualsCondition(property, value), partition, TaskPriority.HIGH, fieldKey.key());
+    }
+
+    private LambdaQueryWrapper<T> buildEqualsCondition(EntityAccessor.Property property, Object value) {
+        LambdaQueryWrapper<T> wrapper = new LambdaQueryWrapper<>(this.entityClass);
+        wrapper.apply(property.column() + " = {0}", value);
+        return wrapper;
+    }
+
+    /**
+     * 根据主键批量获取实体
+     * 缓存命中的实体直接返回，其余主键合并为 IN 查询（每批最多 {@value #MULTI_GET_CHUNK_SIZE} 个）一次加载，
+     * 与并发的 getById / getAll 共享正在进行的加载任务
+     * @param ids 主键集合
+     * @param partition 分区键
+     * @return 主键到实体的映射，按传入顺序排列，不存在的主键不会出现在结果中
+     */
+    public CompletableFuture<Map<Object, T>> getAll(Collection<?> ids, PartitionKey partition) {
+        if (ids == null || ids.isEmpty()) return CompletableFuture.completedFuture(Collections.emptyMap());
+        EntityAccessor.Property pk = this.entityClass == null ? null : EntityAccessor.of(this.entityClass).primaryKey();
+        if (pk == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("no primary key info for repository " + getClass().getSimpleName()));
+        }
+
+        Map<Object, CompletableFuture<T>> futures = new LinkedHashMap<>();
+        // 未命中的主键按归一化后的值登记，与加载到的实体的主键值一致
+        Map<Object, CompletableFuture<T>> misses = new LinkedHashMap<>();
+        for (Object id : ids) {
+            if (id == null || futures.containsKey(id)) continue;
+            PartitionedKey<FieldKey> fieldKey = new PartitionedKey<>(partition, pk.fieldKey(id));
+            T cached = this.idCache.getIfPresent(fieldKey);
+            if (cached == null) {
+                cached = this.promote(fieldKey, partition);
+            }
+            if (cached != null) {
+                futures.put(id, CompletableFuture.completedFuture(cached));
+                continue;
+            }
+            PartitionedKey<QueryKey> pKey = new PartitionedKey<>(partition, pk.queryKey(id));
+            CompletableFuture<T> newFuture = new CompletableFuture<>();
+            CompletableFuture<T> existing = this.pendingEntityFutures.putIfAbsent(pKey, newFuture);
+            if (existing != null) {
+                this.coalescedLoads.increment();
+                futures.put(id, existing);
+            } else {
+                futures.put(id, newFuture);
+                misses.put(QueryKey.normalizeValue(id), newFuture);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            this.debug("Multi-get: {} hits, {} misses, partition: {}", futures.size() - misses.size(), misses.size(), partition);
+            List<Object> missIds = new ArrayList<>(misses.keySet());
+            for (int from = 0; from < missIds.size(); from += MULTI_GET_CHUNK_SIZE) {
+                List<Object> chunk = missIds.subList(from, Math.min(from + MULTI_GET_CHUNK_SIZE, missIds.size()));
+                this.loadByIds(pk, chunk, misses, partition);
+            }
+        }
+
+        CompletableFuture<?>[] all = futures.values().toArray(new CompletableFuture<?>[0]);
+        return CompletableFuture.allOf(all).thenApply(v -> {
+            Map<Object, T> result = new LinkedHashMap<>();
+            futures.forEach((id, future) -> {
+                T entity = future.join();
+                if (entity != null) result.put(id, entity);
+            });
+            return result;
+        });
+    }
+
+    private void loadByIds(EntityAccessor.Property pk, List<Object> chunk, Map<Object, CompletableFuture<T>> misses, PartitionKey partition) {
+        long since = this.versions.now();
+        long generation = this.generations.current(partition);
+        CompletableFuture<List<T>> load;
+        if (this.manager == null) {
+            load = CompletableFuture.completedFuture(List.of());
+        } else {
+            load = this.load(partition, TaskPriority.NORMAL, () -> this.manager.getByIds(chunk).exceptionallyCompose(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (!(cause instanceof UnsupportedOperationException)) return CompletableFuture.failedFuture(cause);
+                // 数据管理器不支持按主键批量查询时，退回到 getList + IN 条件，仍然只有一次查询
+                return this.manager.getList(1, chunk.size(), this.buildInCondition(pk, chunk)).thenApply(page -> page == null || page.records() == null ? List.of() : page.records());
+            }));
+        }
+
+        load.whenCompleteAsync((entities, throwable) -> {
+            Throwable failure = throwable;
+            if (throwable != null) {
+                this.debug("Error loading entities by ids {}: {}", chunk, throwable.getMessage());
+            } else {
+                List<Object> unmatched = null;
+                for (T entity : entities) {
+                    T latest = this.overlayPendingWrite(entity);
+                    if (latest == null) continue;
+                    if (this.isStable(latest, partition, since, generation)) this.cacheEntity(latest, partition);
+                    Object id = pk.get(latest);
+                    CompletableFuture<T> future = misses.get(QueryKey.normalizeValue(id));
+                    if (future != null) {
+                        future.complete(latest);
+                    } else {
+                        if (unmatched == null) unmatched = new ArrayList<>();
+                        unmatched.add(id);
+                    }
+                }
+                // 加载到的实体无法对应到请求的主键时，说明主键类型不一致，不能把剩余的主键当作不存在
+                if (unmatched != null) {
+                    failure = new IllegalStateException("loaded entities " + unmatched + " of " + getClass().getSimpleName() + " match none of the requested ids " + chunk);
+                    this.plugin.getLog().error(failure);
+                }
+            }
+            for (Object id : chunk) {
+                CompletableFuture<T> future = misses.get(id);
+                if (failure != null) {
+                    future.completeExceptionally(failure);
+                } else {
+                    future.complete(null);
+                }
+                this.pendingEntityFutures.remove(new PartitionedKey<>(partition, pk.queryKey(id)), future);
+            }
+        }, this.getAutoExecutor());
+    }
+
+    private LambdaQueryWrapper<T> buildInCondition(EntityAccessor.Property pk, List<Object> ids) {
+        StringBuilder sql = new StringBuilder(pk.column()).append(" IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) sql.append(", ");
+            sql.append('{').append(i).append('}');
+        }
+        sql.append(')');
+        LambdaQueryWrapper<T> wrapper = new LambdaQueryWrapper<>(this.entityClass);
+        wrapper.apply(sql.toString(), ids.toArray());
+        return wrapper;
     }
 
     @Nullable
@@ -113,14 +580,13 @@ public abstract class EntityRepository<T> {
         }
 
         this.debug("direct entity cache miss, triggering async load: {}", pKey);
-        this.get(key, partition);
+        this.get(key, partition, TaskPriority.LOW, null);
         return null;
     }
 
     @Nullable
     public PageResult<T> getListDirectFromCache(int pageNum, int pageSize, LambdaQueryWrapper<T> condition, PartitionKey partition) {
-        PageKey<QueryKey> pageKey = new PageKey<>(pageNum, pageSize, QueryKey.of(condition));
-        PartitionedKey<PageKey<QueryKey>> pPageKey = new PartitionedKey<>(partition, pageKey);
+        PartitionedKey<PageKey<QueryKey>> pPageKey = this.buildPageKey(pageNum, pageSize, condition, partition);
         PageResult<T> cached = this.pageCache.getIfPresent(pPageKey);
         if (cached != null) {
             this.debug("direct page cache hit: {}", pPageKey);
@@ -128,30 +594,37 @@ public abstract class EntityRepository<T> {
         }
 
         this.debug("direct page cache miss, triggering async load: {}", pPageKey);
-        this.getList(pageNum, pageSize, condition, partition);
+        this.getList(pageNum, pageSize, condition, partition, TaskPriority.LOW);
         return null;
     }
 
     public CompletableFuture<PageResult<T>> getList(int pageNum, int pageSize, LambdaQueryWrapper<T> condition, PartitionKey partition) {
-        QueryKey queryKey = QueryKey.of(condition);
-        PageKey<QueryKey> pageKey = new PageKey<>(pageNum, pageSize, queryKey);
-        PartitionedKey<PageKey<QueryKey>> pPageKey = new PartitionedKey<>(partition, pageKey);
+        return this.getList(pageNum, pageSize, condition, partition, TaskPriority.NORMAL);
+    }
+
+    private CompletableFuture<PageResult<T>> getList(int pageNum, int pageSize, LambdaQueryWrapper<T> condition, PartitionKey partition, TaskPriority priority) {
+        PartitionedKey<PageKey<QueryKey>> pPageKey = this.buildPageKey(pageNum, pageSize, condition, partition);
 
         PageResult<T> cached = this.pageCache.getIfPresent(pPageKey);
         if (cached != null) {
             this.debug("Page cache hit: {}", pPageKey);
+            if (this.isStale(this.pageCache, pPageKey)) {
+                this.refreshPage(pPageKey, condition, partition);
+            }
             return CompletableFuture.completedFuture(cached);
         }
 
         CompletableFuture<PageResult<T>> pending = this.pendingPageFutures.get(pPageKey);
         if (pending != null) {
             this.debug("Page pending future found: {}", pPageKey);
+            this.coalescedLoads.increment();
             return pending;
         }
 
         CompletableFuture<PageResult<T>> newFuture = new CompletableFuture<>();
         CompletableFuture<PageResult<T>> existing = this.pendingPageFutures.putIfAbsent(pPageKey, newFuture);
         if (existing != null) {
+            this.coalescedLoads.increment();
             return existing;
         }
 
@@ -162,46 +635,128 @@ public abstract class EntityRepository<T> {
             return newFuture;
         }
 
-        this.manager.getList(pageNum, pageSize, condition).whenCompleteAsync((result, throwable) -> {
+        this.loadPage(pPageKey, condition, partition, newFuture, priority);
+        return newFuture;
+    }
+
+    private void loadPage(PartitionedKey<PageKey<QueryKey>> pPageKey, LambdaQueryWrapper<T> condition, PartitionKey partition, CompletableFuture<PageResult<T>> newFuture, TaskPriority priority) {
+        PageKey<QueryKey> pageKey = pPageKey.key();
+        long since = this.versions.now();
+        this.load(partition, priority, () -> this.manager.getList(pageKey.pageNum(), pageKey.pageSize(), condition)).whenCompleteAsync((result, throwable) -> {
             if (throwable != null) {
                 this.debug("Error loading page for key {}: {}", pPageKey, throwable.getMessage());
                 newFuture.completeExceptionally(throwable);
             } else {
                 if (result != null) {
-                    this.pageCache.put(pPageKey, result);
-                    // 同时缓存结果中的每个实体到实体缓存（包括主键键和注解键）
+                    result = this.overlayPendingWrites(result);
+                    // 加载期间分区发生了写操作时分页结果可能已过期，不再放入缓存
+                    if (this.generations.isStable(partition, pageKey.generation())) {
+                        this.pageCache.put(pPageKey, result);
+                    }
+                    // 实体只检查自身的键，分区中其它实体的写入不影响
                     for (T entity : result.records()) {
-                        cacheEntity(entity, partition);
+                        if (this.isStable(entity, partition, since, pageKey.generation())) this.cacheEntity(entity, partition);
                     }
                 }
                 newFuture.complete(result);
             }
             this.pendingPageFutures.remove(pPageKey, newFuture);
         }, this.getAutoExecutor());
+    }
 
-        return newFuture;
+    /**
+     * 后台重新加载已超过刷新时间的分页，调用方直接使用旧值，与正常加载共享进行中的任务
+     * @param pPageKey 缓存键
+     * @param condition 查询条件
+     * @param partition 分区键
+     */
+    private void refreshPage(PartitionedKey<PageKey<QueryKey>> pPageKey, LambdaQueryWrapper<T> condition, PartitionKey partition) {
+        if (this.manager == null) return;
+        CompletableFuture<PageResult<T>> newFuture = new CompletableFuture<>();
+        if (this.pendingPageFutures.putIfAbsent(pPageKey, newFuture) != null) return;
+        this.debug("Page cache stale: {}, refreshing in background", pPageKey);
+        this.backgroundRefreshes.increment();
+        this.plugin.getExecutorAsync().execute(() -> this.loadPage(pPageKey, condition, partition, newFuture, TaskPriority.LOW));
+    }
+
+    /**
+     * 键集分页查询，任意深度的页查询代价与第一页相同
+     * 结果不进入分页缓存，返回的实体会写入实体缓存
+     * @param cursor 游标，第一页使用 PageCursor#first
+     * @param size 每页数量
+     * @param condition 查询条件，不能包含排序和 last 片段，调用后不会被修改
+     * @param count 是否统计总数
+     * @param partition 分区键
+     * @return 当前页数据与下一页游标
+     */
+    public CompletableFuture<CursorPage<T>> getListAfter(PageCursor<T> cursor, int size, LambdaQueryWrapper<T> condition, boolean count, PartitionKey partition) {
+        if (this.manager == null) {
+            return CompletableFuture.completedFuture(CursorPage.build(List.of(), null, count ? 0 : -1));
+        }
+        long since = this.versions.now();
+        long generation = this.generations.current(partition);
+        return this.load(partition, TaskPriority.NORMAL, () -> this.manager.getListAfter(cursor, size, condition, count)).thenApplyAsync(page -> {
+            List<T> records = new ArrayList<>(page.records().size());
+            for (T record : page.records()) {
+                T latest = this.overlayPendingWrite(record);
+                if (this.isStable(latest, partition, since, generation)) this.cacheEntity(latest, partition);
+                records.add(latest);
+            }
+            this.debug("Cursor page loaded, size: {}, has more: {}, partition: {}", records.size(), page.hasMore(), partition);
+            return CursorPage.build(records, page.next(), page.total());
+        }, this.getAutoExecutor());
     }
 
     public CompletableFuture<@Nullable T> create(T entity, PartitionKey partition) {
         if (this.manager == null) {
             return CompletableFuture.completedFuture(null);
         }
-        return this.manager.create(entity).thenApplyAsync(created -> {
+        return this.flushWriteBehind().thenCompose(v -> this.manager.create(entity)).thenApplyAsync(created -> {
             if (created != null) {
+                // 之前开始、结果为不存在的加载不再写入不存在结果缓存
+                this.versions.touch(partition, this.keysOf(created));
                 this.cacheEntity(created, partition);
                 this.debug("Entity created successfully: {}", created);
                 this.invalidateAllPagesInPartition(partition);
+                this.publishInvalidation(partition, this.remoteKeysOf(created));
             }
             return created;
         }, this.getAutoExecutor());
     }
 
+    /**
+     * 更新实体
+     * 开启延迟写入后，主键不为空的实体直接按主键放入队列并返回 true：查询条件不再生效，也不会检查数据库中是否存在该行，
+     * 行不存在时批量写入只是不影响任何行。需要确认行存在或按查询条件更新时，应在未开启延迟写入的仓库中调用
+     * @param entity 更新后的实体
+     * @param key 查询条件
+     * @param partition 分区键
+     * @return 是否更新成功
+     */
     public CompletableFuture<Boolean> update(T entity, LambdaQueryWrapper<T> key, PartitionKey partition) {
         if (this.manager == null) {
             return CompletableFuture.completedFuture(false);
         }
-        return this.fetchEntityByPage(key).thenComposeAsync(oldEntities -> {
-            if (oldEntities.isEmpty()) {
+        if (this.writeBehind != null) {
+            if (this.enqueueUpdate(entity, partition)) {
+                return CompletableFuture.completedFuture(true);
+            }
+            // 主键为空时按查询条件直接写入，先刷新队列，避免被同一实体尚未写入的更新覆盖
+            return this.flushWriteBehind().thenCompose(v -> this.updateDirect(entity, key, partition));
+        }
+        return this.updateDirect(entity, key, partition);
+    }
+
+    private CompletableFuture<Boolean> updateDirect(T entity, LambdaQueryWrapper<T> key, PartitionKey partition) {
+        // 写入期间完成的、结果包含这些键的加载可能读到旧数据，不写入缓存
+        KeyVersions.Write write = this.versions.begin(partition);
+        RemoteKeys remoteKeys = this.remoteKeys();
+        return this.forEachMatching(key, old -> {
+            write.addAll(this.keysOf(old));
+            this.invalidateEntityCaches(old, partition);
+            remoteKeys.add(old);
+        }).thenComposeAsync(matched -> {
+            if (matched == 0) {
                 this.debug("No entities found for update, partition: {}, key: {}", partition, key);
                 return CompletableFuture.completedFuture(false);
             }
@@ -209,36 +764,79 @@ public abstract class EntityRepository<T> {
                 if (!success) {
                     return false;
                 }
-                for (T oldEntity : oldEntities) {
-                    this.invalidateEntityCaches(oldEntity, partition);
-                }
-                this.cacheEntity(entity, partition);
+                write.addAll(this.keysOf(entity));
                 this.invalidateAllPagesInPartition(partition);
-                this.debug("Update successful, invalidated {} old entity caches", oldEntities.size());
+                this.cacheEntity(entity, partition);
+                remoteKeys.add(entity);
+                this.publishInvalidation(partition, remoteKeys);
+                this.debug("Update successful, invalidated {} old entity caches", matched);
                 return true;
             });
-        }, this.getAutoExecutor());
+        }, this.getAutoExecutor()).whenComplete((result, throwable) -> write.end());
     }
 
     public CompletableFuture<Integer> delete(LambdaQueryWrapper<T> key, PartitionKey partition) {
         if (this.manager == null) {
             return CompletableFuture.completedFuture(0);
         }
-        return this.fetchEntityByPage(key).thenComposeAsync(entities -> {
-            if (entities.isEmpty()) {
-                return CompletableFuture.completedFuture(0);
-            }
-            return this.manager.delete(key).thenApply(count -> {
-                if (count > 0) {
-                    for (T entity : entities) {
-                        this.invalidateEntityCaches(entity, partition);
-                    }
-                    this.invalidateAllPagesInPartition(partition);
+        return this.flushWriteBehind().thenCompose(v -> {
+            KeyVersions.Write write = this.versions.begin(partition);
+            RemoteKeys remoteKeys = this.remoteKeys();
+            return this.forEachMatching(key, entity -> {
+                write.addAll(this.keysOf(entity));
+                this.invalidateEntityCaches(entity, partition);
+                remoteKeys.add(entity);
+            }).thenComposeAsync(matched -> {
+                if (matched == 0) {
+                    return CompletableFuture.completedFuture(0);
                 }
-                return count;
+                return this.manager.delete(key).thenApply(count -> {
+                    if (count > 0) {
+                        this.invalidateAllPagesInPartition(partition);
+                        this.publishInvalidation(partition, remoteKeys);
+                    }
+                    return count;
+                });
+            }, this.getAutoExecutor()).whenComplete((result, throwable) -> write.end());
+        });
+    }
 
+    /**
+     * 流式遍历所有匹配的实体，每读到一行立即处理，内存占用与匹配行数无关
+     * 只查询主键与 @CacheKey 字段；数据管理器不支持流式查询时退回到分页加载
+     * @param condition 查询条件
+     * @param action 每个实体的处理逻辑
+     * @return 匹配的行数
+     */
+    private CompletableFuture<Long> forEachMatching(LambdaQueryWrapper<T> condition, Consumer<T> action) {
+        return this.manager.streamList(this.projectCacheKeys(condition), action).exceptionallyCompose(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (!(cause instanceof UnsupportedOperationException)) return CompletableFuture.failedFuture(cause);
+            return this.fetchEntityByPage(condition).thenApply(entities -> {
+                entities.forEach(action);
+                return (long) entities.size();
             });
-        }, this.getAutoExecutor());
+        });
+    }
+
+    /**
+     * 复制查询条件，并只查询主键与 @CacheKey 字段
+     * @param condition 查询条件
+     * @return 只查询缓存键字段的查询条件，无法复制时返回原条件
+     */
+    private LambdaQueryWrapper<T> projectCacheKeys(LambdaQueryWrapper<T> condition) {
+        if (this.entityClass == null) return condition;
+        EntityAccessor accessor = EntityAccessor.of(this.entityClass);
+        if (accessor.primaryKey() == null) return condition;
+        try {
+            LambdaQueryWrapper<T> projected = condition.clone();
+            // 主键列由 MyBatis-Plus 自动包含
+            projected.select(this.entityClass, field -> accessor.cacheKey(field.getProperty()) != null);
+            return projected;
+        } catch (RuntimeException e) {
+            this.debug("Could not project cache key columns, streaming full rows: {}", e.getMessage());
+            return condition;
+        }
     }
 
     private CompletableFuture<List<T>> fetchEntityByPage(LambdaQueryWrapper<T> condition) {
@@ -260,198 +858,631 @@ public abstract class EntityRepository<T> {
         });
     }
 
-    /**
-     * 提取实体的主键值（反射实现，结果缓存在 PK_FIELD_CACHE 中）
-     * @param entity 实体对象
-     * @return 主键值，若无法提取则返回 null
-     */
-    private Object extractPrimaryKeyValue(T entity) {
-        if (entity == null) return null;
+    private void invalidateEntityCaches(T entity, PartitionKey partition) {
+        if (entity == null) return;
+        EntityAccessor accessor = EntityAccessor.of(entity.getClass());
 
-        Field pkField = PK_FIELD_CACHE.get(entity.getClass());
-        if (pkField == null) {
-            TableInfo tableInfo = TableInfoHelper.getTableInfo(entity.getClass());
-            if (tableInfo == null || tableInfo.getKeyProperty() == null) {
-                this.debug("No primary key property found for class: {}", entity.getClass().getSimpleName());
-                return null;
+        EntityAccessor.Property pk = accessor.primaryKey();
+        if (pk != null) {
+            Object id = pk.get(entity);
+            if (id != null) {
+                this.invalidateProperty(pk, id, partition);
             }
+        }
 
-            try {
-                pkField = entity.getClass().getDeclaredField(tableInfo.getKeyProperty());
-                pkField.setAccessible(true);
-                PK_FIELD_CACHE.put(entity.getClass(), pkField);
-            } catch (NoSuchFieldException e) {
-                this.debug("Primary key field '{}' not found in class: {}", tableInfo.getKeyProperty(), entity.getClass().getSimpleName());
-                return null;
-            }
+        for (EntityAccessor.Property property : accessor.cacheKeys()) {
+            Object value = property.get(entity);
+            if (value == null) continue;
+            this.invalidateProperty(property, value, partition);
         }
+    }
 
-        try {
-            return pkField.get(entity);
-        } catch (IllegalAccessException e) {
-            this.debug("Failed to access primary key field: {}", e.getMessage());
-            return null;
+    private void invalidateProperty(EntityAccessor.Property property, Object value, PartitionKey partition) {
+        PartitionedKey<QueryKey> key = new PartitionedKey<>(partition, property.queryKey(value));
+        this.entityCache.invalidate(key);
+        this.pendingEntityFutures.remove(key);
+        Cache<PartitionedKey<QueryKey>, Long> negative = this.negativeCache;
+        if (negative != null) negative.invalidate(key);
+        PartitionedKey<FieldKey> fieldKey = new PartitionedKey<>(partition, property.fieldKey(value));
+        this.idCache.invalidate(fieldKey);
+        CompactEntityTier<T> tier = this.compactTier;
+        if (tier != null) tier.invalidate(fieldKey);
+        this.debug("Invalidated cache key: {}", key);
+    }
+
+    /**
+     * 从泛型参数中解析实体类型
+     * @return 实体类型，无法解析时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    private Class<T> resolveEntityClass() {
+        Class<?> current = this.getClass();
+        while (current != null && current != EntityRepository.class) {
+            Type type = current.getGenericSuperclass();
+            if (type instanceof ParameterizedType parameterizedType && parameterizedType.getRawType() == EntityRepository.class) {
+                Type argument = parameterizedType.getActualTypeArguments()[0];
+                return argument instanceof Class<?> clazz ? (Class<T>) clazz : null;
+            }
+            current = current.getSuperclass();
         }
+        return null;
     }
 
     /**
-     * 根据实体和分区构建基于主键的查询键（用于实体缓存）
-     * @param entity 实体对象
-     * @param partition 分区键
-     * @return 分区+主键查询键，若无法构建则返回 null
+     * 调试日志输出，使用固定参数个数的重载，未开启调试时不会创建参数数组
+     * @param format 格式字符串
      */
-    private PartitionedKey<QueryKey> buildPrimaryKeyQueryKey(T entity, PartitionKey partition) {
-        Object id = this.extractPrimaryKeyValue(entity);
-        if (id == null) {
+    private void debug(String format) {
+        Log log = this.plugin.getLog();
+        if (!log.isDebug()) return;
+        log.debugAs(this.logName, format);
+    }
+
+    private void debug(String format, Object arg) {
+        Log log = this.plugin.getLog();
+        if (!log.isDebug()) return;
+        log.debugAs(this.logName, format, arg);
+    }
+
+    private void debug(String format, Object arg1, Object arg2) {
+        Log log = this.plugin.getLog();
+        if (!log.isDebug()) return;
+        log.debugAs(this.logName, format, arg1, arg2);
+    }
+
+    private void debug(String format, Object arg1, Object arg2, Object arg3) {
+        Log log = this.plugin.getLog();
+        if (!log.isDebug()) return;
+        log.debugAs(this.logName, format, arg1, arg2, arg3);
+    }
+
+    /**
+     * 缓存实体到所有相关键
+     * @param entity 具体实体
+     * @param partition 作用区域
+     */
+    private void cacheEntity(T entity, PartitionKey partition) {
+        if (entity == null) return;
+        this.forgetMissing(entity, partition);
+        EntityAccessor accessor = EntityAccessor.of(entity.getClass());
+
+        EntityAccessor.Property pk = accessor.primaryKey();
+        Object id = pk == null ? null : pk.get(entity);
+        if (id != null) {
+            this.idCache.put(new PartitionedKey<>(partition, pk.fieldKey(id)), entity);
+        }
+
+        boolean cachedByKey = false;
+        for (EntityAccessor.Property property : accessor.cacheKeys()) {
+            Object value = property.get(entity);
+            if (value == null) continue;
+            PartitionedKey<QueryKey> key = new PartitionedKey<>(partition, property.queryKey(value));
+            this.entityCache.put(key, entity);
+            this.idCache.put(new PartitionedKey<>(partition, property.fieldKey(value)), entity);
+            cachedByKey = true;
+            this.debug("Entity cached (cache-key): {}", key);
+        }
+        if (cachedByKey) return;
+
+        PartitionedKey<QueryKey> pkKey;
+        if (id != null) {
+            pkKey = new PartitionedKey<>(partition, pk.queryKey(id));
+            this.debug("Entity cached (pk): {}", pkKey);
+        } else {
             this.debug("Cannot build primary key query key, id is null for entity: {}", entity);
-            return null;
+            pkKey = new PartitionedKey<>(partition, QueryKey.of(new LambdaQueryWrapper<>(entity)));
+            this.debug("Entity cached (fallback): {}", pkKey);
         }
+        this.entityCache.put(pkKey, entity);
+    }
+
+    /**
+     * 使指定分区的所有分页缓存失效，只递增分区代数，旧的分页缓存由正常过期淘汰
+     * @param partition 分区键
+     */
+    private void invalidateAllPagesInPartition(PartitionKey partition) {
+        long generation = this.generations.advance(partition);
+        this.debug("Invalidated all page caches for partition: {}, generation: {}", partition, generation);
+    }
 
-        TableInfo tableInfo = TableInfoHelper.getTableInfo(entity.getClass());
-        if (tableInfo == null || tableInfo.getKeyColumn() == null) {
-            this.debug("No key column info for class: {}", entity.getClass().getSimpleName());
-            return null;
+    /**
+     * 构建带有分区当前代数的分页缓存键
+     * @param pageNum 页码
+     * @param pageSize 每页数量
+     * @param condition 查询条件
+     * @param partition 分区键
+     * @return 分页缓存键
+     */
+    private PartitionedKey<PageKey<QueryKey>> buildPageKey(int pageNum, int pageSize, LambdaQueryWrapper<T> condition, PartitionKey partition) {
+        PageKey<QueryKey> pageKey = new PageKey<>(pageNum, pageSize, QueryKey.of(condition), this.generations.current(partition));
+        return new PartitionedKey<>(partition, pageKey);
+    }
+
+    /**
+     * 开启延迟写入模式
+     * 开启后 update 会立即更新实体缓存，并按实体主键合并后放入队列，由数量阈值或定时任务批量写入数据库；
+     * 此时 update 的查询条件不再生效，实体按主键更新，主键为空的实体先刷新队列再按查询条件直接写入。
+     * create 与 delete 执行前会先刷新队列，保证写入顺序。需要 BaseDataManager 提供 getMapperClass
+     * @param policy 延迟写入策略
+     */
+    public synchronized void enableWriteBehind(WriteBehindPolicy policy) {
+        if (this.manager == null || this.manager.getMapperClass() == null) {
+            throw new IllegalStateException("write-behind requires " + (this.manager == null ? "a data manager" : this.manager.getClass().getSimpleName() + "#getMapperClass"));
+        }
+        if (this.writeBehind != null) {
+            throw new IllegalStateException("write-behind already enabled");
         }
+        this.writeBehind = new WriteBehindQueue<>(this.plugin, this.manager, policy, this::beginWriteBehindFlush, this::dropWriteBehind);
+        this.debug("write-behind enabled, batch size: {}, interval: {} ticks", policy.batchSize(), policy.flushIntervalTicks());
+    }
+
+    /**
+     * 获取仓库运行指标快照，包括缓存命中率、加载合并次数、数据库耗时与热点查询键
+     * @return 指标快照
+     */
+    public RepositoryMetrics getMetrics() {
+        return new RepositoryMetrics(
+                this.getClass().getSimpleName(),
+                this.entityCache.stats(),
+                this.entityCache.estimatedSize(),
+                this.idCache.stats(),
+                this.pageCache.stats(),
+                this.pageCache.estimatedSize(),
+                this.coalescedLoads.sum(),
+                this.backgroundRefreshes.sum(),
+                this.manager == null ? null : this.manager.getLatencySnapshot(),
+                this.manager == null ? null : this.manager.getExecutorStats(),
+                this.hotKeys.top(),
+                this.getWriteBehindStats(),
+                this.getCompactTierStats(),
+                this.negativeHits.sum(),
+                this.negativeCache == null ? 0 : this.negativeCache.estimatedSize(),
+                this.bulkhead == null ? 0 : this.bulkhead.queued()
+        );
+    }
+
+    /**
+     * 立即将延迟写入队列刷新到数据库
+     * @return 写入的行数，未开启延迟写入时为 0
+     */
+    public CompletableFuture<Integer> flushWriteBehind() {
+        WriteBehindQueue<T> queue = this.writeBehind;
+        if (queue == null || queue.isEmpty()) return CompletableFuture.completedFuture(0);
+        return queue.flush();
+    }
 
-        LambdaQueryWrapper<T> pkWrapper = new LambdaQueryWrapper<>(entity);
-        pkWrapper.apply(tableInfo.getKeyColumn() + " = {0}", id);
-        return new PartitionedKey<>(partition, QueryKey.of(pkWrapper));
+    /**
+     * 获取延迟写入队列的运行状态
+     * @return 运行状态，未开启延迟写入时为 null
+     */
+    public @Nullable WriteBehindStats getWriteBehindStats() {
+        WriteBehindQueue<T> queue = this.writeBehind;
+        return queue == null ? null : queue.stats();
     }
 
     /**
-     * 获取实体类中被 @CacheKey
-     * @param entityClass 实体类
-     * @return 返回的 list集合
+     * 延迟写入队列开始批量写入，写入期间完成的、结果包含这些实体的加载可能读到旧数据，不写入缓存
+     * @param batch 本次写入的实体
+     * @return 写入结束后的回调，提交成功时使分页缓存失效并广播失效消息
      */
-    private List<Field> getCacheKeyFields(Class<?> entityClass) {
-        return CACHE_KEY_FIELDS_CACHE.computeIfAbsent(entityClass, clazz -> {
-            List<Field> fields = new ArrayList<>();
-            Class<?> current = clazz;
-            while (current != null && current != Object.class) {
-                for (Field field : current.getDeclaredFields()) {
-                    if (field.isAnnotationPresent(CacheKey.class)) {
-                        field.setAccessible(true);
-                        fields.add(field);
+    private Consumer<Boolean> beginWriteBehindFlush(Collection<WriteBehindQueue.Entry<T>> batch) {
+        Map<PartitionKey, KeyVersions.Write> writes = new LinkedHashMap<>();
+        for (WriteBehindQueue.Entry<T> entry : batch) {
+            KeyVersions.Write write = writes.computeIfAbsent(entry.partition(), this.versions::begin);
+            write.addAll(this.keysOf(entry.entity()));
+            write.addAll(this.keysOf(entry.previous()));
+        }
+        return committed -> {
+            try {
+                if (committed) {
+                    for (WriteBehindQueue.Entry<T> entry : batch) {
+                        this.forgetMissing(entry.entity(), entry.partition());
                     }
+                    writes.keySet().forEach(this::invalidateAllPagesInPartition);
                 }
-                current = current.getSuperclass();
+            } finally {
+                writes.values().forEach(KeyVersions.Write::end);
             }
-            return fields;
-        });
+            if (committed) {
+                this.publishFlushed(batch);
+            }
+        };
     }
 
     /**
-     * 为实体构建所有 @CacheKey 标记的缓存键
-     * @param entity 实体
+     * 延迟写入队列丢弃了多次写入失败的实体，缓存中的值从未写入数据库，使其失效后从数据库重新加载
+     * @param entry 被丢弃的实体
+     */
+    private void dropWriteBehind(WriteBehindQueue.Entry<T> entry) {
+        this.versions.touch(entry.partition(), this.keysOf(entry.entity()));
+        this.invalidateEntityCaches(entry.entity(), entry.partition());
+        this.invalidateAllPagesInPartition(entry.partition());
+    }
+
+    /**
+     * 按分区广播已提交实体的新旧缓存键
+     * @param batch 已提交的实体
+     */
+    private void publishFlushed(Collection<WriteBehindQueue.Entry<T>> batch) {
+        if (this.invalidationTransport == null) return;
+        Map<PartitionKey, RemoteKeys> keys = new LinkedHashMap<>();
+        for (WriteBehindQueue.Entry<T> entry : batch) {
+            RemoteKeys remoteKeys = keys.computeIfAbsent(entry.partition(), partition -> this.remoteKeys());
+            remoteKeys.add(entry.previous());
+            remoteKeys.add(entry.entity());
+        }
+        keys.forEach(this::publishInvalidation);
+    }
+
+    /**
+     * 将更新放入延迟写入队列，并立即更新缓存
+     * @param entity 更新后的实体
      * @param partition 作用区域
-     * @return 返回的这个区域内的查询 key
-     */
-    private List<PartitionedKey<QueryKey>> buildCacheKeyQueryKeys(T entity, PartitionKey partition) {
-        if (entity == null) return Collections.emptyList();
-        List<PartitionedKey<QueryKey>> keys = new ArrayList<>();
-        Class<?> entityClass = entity.getClass();
-        List<Field> cacheKeyFields = getCacheKeyFields(entityClass);
-        for (Field field : cacheKeyFields) {
-            try {
-                Object value = field.get(entity);
-                if (value == null) continue;
-                String columnName = camelToUnderline(field.getName());
-                LambdaQueryWrapper<T> wrapper = new LambdaQueryWrapper<>(entity);
-                wrapper.apply(columnName + " = {0}", value);
-                QueryKey queryKey = QueryKey.of(wrapper);
-                keys.add(new PartitionedKey<>(partition, queryKey));
-            } catch (IllegalAccessException e) {
-                this.debug("Failed to access cache key field '{}': {}", field.getName(), e.getMessage());
-            }
+     * @return 主键为空无法放入队列时返回 false
+     */
+    private boolean enqueueUpdate(T entity, PartitionKey partition) {
+        WriteBehindQueue<T> queue = this.writeBehind;
+        if (queue == null || entity == null) return false;
+        EntityAccessor.Property pk = EntityAccessor.of(entity.getClass()).primaryKey();
+        Object id = pk == null ? null : pk.get(entity);
+        if (id == null) return false;
+
+        T previous = this.idCache.getIfPresent(new PartitionedKey<>(partition, pk.fieldKey(id)));
+        if (previous == entity) previous = null;
+        if (previous != null) {
+            this.invalidateEntityCaches(previous, partition);
         }
-        return keys;
+        // 之前开始的加载读到的数据库旧值会被队列中的实体覆盖，但结果为不存在的加载不能再写入不存在结果缓存
+        this.versions.touch(partition, this.keysOf(entity));
+        this.cacheEntity(entity, partition);
+        this.invalidateAllPagesInPartition(partition);
+        // 失效消息在批量写入提交后再广播，否则其它服务器可能在写入前重新加载旧值
+        queue.enqueue(id, entity, previous, partition);
+        return true;
     }
 
     /**
-     * 驼峰转下划线
-     * @param name 字符串
-     * @return 处理过后的返回值
+     * 如果实体在延迟写入队列中有尚未写入的新值，返回队列中的实体
+     * @param entity 从数据库加载的实体
+     * @return 最新的实体
      */
-    private String camelToUnderline(String name) {
-        if (name == null || name.isEmpty()) return name;
-        StringBuilder result = new StringBuilder();
-        result.append(Character.toLowerCase(name.charAt(0)));
-        for (int i = 1; i < name.length(); i++) {
-            char c = name.charAt(i);
-            if (Character.isUpperCase(c)) {
-                if (Character.isLowerCase(name.charAt(i - 1))) {
-                    result.append('_');
-                }
-                result.append(Character.toLowerCase(c));
-            } else {
-                result.append(c);
-            }
+    private T overlayPendingWrite(T entity) {
+        WriteBehindQueue<T> queue = this.writeBehind;
+        if (queue == null || entity == null || queue.isEmpty()) return entity;
+        EntityAccessor.Property pk = EntityAccessor.of(entity.getClass()).primaryKey();
+        Object id = pk == null ? null : pk.get(entity);
+        if (id == null) return entity;
+        T pending = queue.peek(id);
+        return pending == null ? entity : pending;
+    }
+
+    private PageResult<T> overlayPendingWrites(PageResult<T> result) {
+        WriteBehindQueue<T> queue = this.writeBehind;
+        if (queue == null || queue.isEmpty() || result.records() == null) return result;
+        List<T> records = new ArrayList<>(result.records().size());
+        for (T record : result.records()) {
+            records.add(this.overlayPendingWrite(record));
         }
-        return result.toString();
+        return PageResult.build(records, result.total(), result.totalPages(), result.currentPage());
     }
 
-    private void invalidateEntityCaches(T entity, PartitionKey partition) {
-        PartitionedKey<QueryKey> pkKey = this.buildPrimaryKeyQueryKey(entity, partition);
-        if (pkKey != null) {
-            this.entityCache.invalidate(pkKey);
-            this.pendingEntityFutures.remove(pkKey);
-            this.debug("Invalidated primary key cache: {}", pkKey);
+    /**
+     * 工作单元开始执行，事务期间完成的、结果包含该实体的键的加载不写入缓存
+     * @param entity 实体
+     * @param partition 分区键
+     * @return 写操作，事务结束后传给 endUnitOfWork
+     */
+    KeyVersions.Write beginUnitOfWork(T entity, PartitionKey partition) {
+        KeyVersions.Write write = this.versions.begin(partition);
+        write.addAll(this.keysOf(entity));
+        EntityAccessor.Property pk = EntityAccessor.of(entity.getClass()).primaryKey();
+        Object id = pk == null ? null : pk.get(entity);
+        if (id != null) {
+            write.addAll(this.keysOf(this.idCache.getIfPresent(new PartitionedKey<>(partition, pk.fieldKey(id)))));
         }
+        return write;
+    }
+
+    void endUnitOfWork(KeyVersions.Write write) {
+        write.end();
+    }
 
-        List<PartitionedKey<QueryKey>> cacheKeys = this.buildCacheKeyQueryKeys(entity, partition);
-        for (PartitionedKey<QueryKey> key : cacheKeys) {
-            this.entityCache.invalidate(key);
-            this.pendingEntityFutures.remove(key);
-            this.debug("Invalidated cache key: {}", key);
+    /**
+     * 工作单元提交成功后更新缓存
+     * @param kind 操作类型
+     * @param entity 实体
+     * @param partition 分区键
+     */
+    void applyCommitted(UnitOfWork.Kind kind, T entity, PartitionKey partition) {
+        RemoteKeys remoteKeys = this.remoteKeys();
+        if (kind != UnitOfWork.Kind.INSERT) {
+            EntityAccessor.Property pk = EntityAccessor.of(entity.getClass()).primaryKey();
+            Object id = pk == null ? null : pk.get(entity);
+            T previous = id == null ? null : this.idCache.getIfPresent(new PartitionedKey<>(partition, pk.fieldKey(id)));
+            if (previous != null) {
+                this.invalidateEntityCaches(previous, partition);
+                remoteKeys.add(previous);
+            }
+            this.invalidateEntityCaches(entity, partition);
+        }
+        if (kind != UnitOfWork.Kind.DELETE) {
+            this.cacheEntity(entity, partition);
         }
+        remoteKeys.add(entity);
+        this.invalidateAllPagesInPartition(partition);
+        this.publishInvalidation(partition, remoteKeys);
+        this.debug("Unit of work applied: {} {}", kind, entity);
     }
 
     /**
-     * 调试日志输出
-     * @param format 格式字符串
-     * @param args 参数
+     * 开启缓存预热快照，快照最长有效时间与缓存的 expireAfterWrite 相同
+     * @param maxEntries 快照最大条目数
+     * @return 加载到缓存中的条目数
+     * @see #enableWarmSnapshot(int, Duration)
      */
-    private void debug(String format, Object... args) {
-        Object[] merged = new Object[args.length + 1];
-        merged[0] = getClass().getSimpleName();
-        System.arraycopy(args, 0, merged, 1, args.length);
-        this.plugin.getLog().debug("[{}] " + format, merged);
+    public CompletableFuture<Integer> enableWarmSnapshot(int maxEntries) {
+        return this.enableWarmSnapshot(maxEntries, this.cachePolicy.expireAfterWrite());
     }
 
     /**
-     * 缓存实体到所有相关键
-     * @param entity 具体实体
-     * @param partition 作用区域
+     * 从配置文件读取并开启缓存预热快照，未配置 max-entries 或不大于 0 时不开启
+     * <pre>
+     * path:
+     *   max-entries: 500
+     *   max-age-seconds: 18000   # 默认与缓存的 expire-after-write-seconds 相同
+     * </pre>
+     * @param configuration 配置文件
+     * @param path 配置节点路径
+     * @return 加载到缓存中的条目数
+     * @see #enableWarmSnapshot(int, Duration)
      */
-    private void cacheEntity(T entity, PartitionKey partition) {
-        List<PartitionedKey<QueryKey>> cacheKeys = this.buildCacheKeyQueryKeys(entity, partition);
-        if (!cacheKeys.isEmpty()) {
-            for (PartitionedKey<QueryKey> key : cacheKeys) {
-                this.entityCache.put(key, entity);
-                this.debug("Entity cached (cache-key): {}", key);
+    public CompletableFuture<Integer> enableWarmSnapshot(@NotNull BaseConfiguration configuration, @NotNull String path) {
+        String prefix = path.isEmpty() ? "" : path + ".";
+        int maxEntries = configuration.getInt(prefix + "max-entries", 0);
+        if (maxEntries <= 0) return CompletableFuture.completedFuture(0);
+        int maxAge = configuration.getInt(prefix + "max-age-seconds", (int) this.cachePolicy.expireAfterWrite().toSeconds());
+        if (maxAge <= 0) {
+            throw new IllegalArgumentException(prefix + "max-age-seconds must be positive");
+        }
+        return this.enableWarmSnapshot(maxEntries, Duration.ofSeconds(maxAge));
+    }
+
+    /**
+     * 开启缓存预热快照
+     * 关闭仓库时将访问最频繁的实体写入插件数据目录下的快照文件，并立即在后台加载上次保存的快照。
+     * 实体结构变化时快照按结构哈希整体失效，快照只在未超过 maxAge 与缓存过期时间中较短者时生效；加载前实体的键已发生写操作或实体已在缓存中时跳过对应条目。
+     * 停机期间其它服务器的写入与失效消息不会补发，maxAge 即快照内容可能落后于数据库的最长时间，与缓存条目本身允许的陈旧时间一致
+     * @param maxEntries 快照最大条目数
+     * @param maxAge 快照最长有效时间
+     * @return 加载到缓存中的条目数
+     */
+    public synchronized CompletableFuture<Integer> enableWarmSnapshot(int maxEntries, @NotNull Duration maxAge) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        if (maxAge.isNegative() || maxAge.isZero()) {
+            throw new IllegalArgumentException("maxAge must be positive");
+        }
+        EntityAccessor.Property pk = this.entityClass == null ? null : EntityAccessor.of(this.entityClass).primaryKey();
+        if (pk == null) {
+            throw new IllegalStateException("warm snapshot requires primary key info for repository " + getClass().getSimpleName());
+        }
+        this.snapshotSize = maxEntries;
+        return CompletableFuture.supplyAsync(() -> {
+            WarmSnapshot.Contents<T> contents;
+            try {
+                Duration expireAfterWrite = this.cachePolicy.expireAfterWrite();
+                contents = WarmSnapshot.read(this.snapshotPath(), this.entityClass, maxAge.compareTo(expireAfterWrite) < 0 ? maxAge : expireAfterWrite);
+            } catch (IOException e) {
+                this.plugin.getLog().warn(e, "failed to read cache snapshot of {}, starting cold.", getClass().getSimpleName());
+                return 0;
             }
-        } else {
-            PartitionedKey<QueryKey> pkKey = buildPrimaryKeyQueryKey(entity, partition);
-            if (pkKey != null) {
-                this.entityCache.put(pkKey, entity);
-                this.debug("Entity cached (pk): {}", pkKey);
-            } else {
-                LambdaQueryWrapper<T> wrapper = new LambdaQueryWrapper<>(entity);
-                pkKey = new PartitionedKey<>(partition, QueryKey.of(wrapper));
-                this.entityCache.put(pkKey, entity);
-                this.debug("Entity cached (fallback): {}", pkKey);
+            if (contents.skipped() > 0) {
+                this.plugin.getLog().warn("skipped {} undecodable entries in cache snapshot of {}.", contents.skipped(), getClass().getSimpleName());
+            }
+            int loaded = 0;
+            for (WarmSnapshot.Entry<T> entry : contents.entries()) {
+                PartitionKey partition = entry.partition();
+                Object id = pk.get(entry.entity());
+                // 启动后实体的键已被写入时跳过
+                if (id == null || !this.versions.isStable(partition, this.keysOf(entry.entity()), 0)) continue;
+                if (this.idCache.getIfPresent(new PartitionedKey<>(partition, pk.fieldKey(id))) != null) continue;
+                this.cacheEntity(entry.entity(), partition);
+                loaded++;
+            }
+            this.debug("warm snapshot loaded, {} of {} entries.", loaded, contents.entries().size());
+            return loaded;
+        }, this.plugin.getExecutorAsync());
+    }
+
+    /**
+     * 将访问最频繁的实体写入快照文件
+     */
+    private void writeWarmSnapshot() {
+        int limit = this.snapshotSize;
+        if (limit <= 0 || this.entityClass == null) return;
+        EntityAccessor.Property pk = EntityAccessor.of(this.entityClass).primaryKey();
+        if (pk == null) return;
+        Map<PartitionedKey<FieldKey>, T> hottest = this.idCache.policy().eviction()
+                .map(eviction -> eviction.hottest(limit * (1 + EntityAccessor.of(this.entityClass).cacheKeys().size())))
+                .orElse(Map.of());
+        List<WarmSnapshot.Entry<T>> entries = new ArrayList<>(Math.min(limit, hottest.size()));
+        for (Map.Entry<PartitionedKey<FieldKey>, T> entry : hottest.entrySet()) {
+            if (!pk.name().equals(entry.getKey().key().field())) continue;
+            entries.add(new WarmSnapshot.Entry<>(entry.getKey().partition(), entry.getValue()));
+            if (entries.size() >= limit) break;
+        }
+        try {
+            int written = WarmSnapshot.write(this.snapshotPath(), this.entityClass, entries);
+            if (written < entries.size()) {
+                this.plugin.getLog().warn("skipped {} unencodable entries in cache snapshot of {}.", entries.size() - written, getClass().getSimpleName());
             }
+            this.debug("warm snapshot written, {} entries.", written);
+        } catch (IOException | RuntimeException e) {
+            this.plugin.getLog().warn(e, "failed to write cache snapshot of {}.", getClass().getSimpleName());
+        }
+    }
+
+    private Path snapshotPath() {
+        return this.plugin.getDataFolder().toPath().resolve("cache").resolve(getClass().getSimpleName() + ".snapshot");
+    }
+
+    /**
+     * 开启紧凑二级缓存
+     * 实体缓存因容量淘汰的实体会以 JSON 字节保存在二级缓存中，按主键（getById / getAll）再次访问时解码并放回实体缓存，
+     * 其它查询条件未命中时仍会查询数据库。实体需要能被 Gson 序列化
+     * @param maxBytes 二级缓存最大字节数
+     * @param offHeap 是否使用堆外 DirectByteBuffer 存放数据，堆外内存随缓冲区对象被回收时释放
+     */
+    public synchronized void enableCompactTier(long maxBytes, boolean offHeap) {
+        if (this.compactTier != null) {
+            throw new IllegalStateException("compact tier already enabled");
+        }
+        if (this.entityClass == null || EntityAccessor.of(this.entityClass).primaryKey() == null) {
+            throw new IllegalStateException("compact tier requires primary key info for repository " + getClass().getSimpleName());
         }
+        this.compactTier = new CompactEntityTier<>(this.entityClass, maxBytes, this.cachePolicy.expireAfterWrite(), offHeap);
+        this.debug("compact tier enabled, max bytes: {}, off-heap: {}", maxBytes, offHeap);
+    }
+
+    /**
+     * 获取紧凑二级缓存的运行状态
+     * @return 运行状态，未开启时为 null
+     */
+    public @Nullable CompactTierStats getCompactTierStats() {
+        CompactEntityTier<T> tier = this.compactTier;
+        return tier == null ? null : tier.stats();
     }
 
     /**
-     * 使指定分区的所有分页缓存失效
+     * 实体缓存因容量淘汰主键索引时，将实体降级到紧凑二级缓存
+     */
+    private void demote(PartitionedKey<FieldKey> key, T entity, RemovalCause cause) {
+        CompactEntityTier<T> tier = this.compactTier;
+        if (tier == null || cause != RemovalCause.SIZE || key == null || entity == null) return;
+        EntityAccessor.Property pk = EntityAccessor.of(entity.getClass()).primaryKey();
+        if (pk == null || !pk.name().equals(key.key().field())) return;
+        tier.demote(key, entity);
+    }
+
+    /**
+     * 从紧凑二级缓存中取出实体并放回实体缓存
+     * @param key 主键索引键
      * @param partition 分区键
+     * @return 实体，不存在时为 null
      */
-    private void invalidateAllPagesInPartition(PartitionKey partition) {
-        this.pageCache.asMap().keySet().removeIf(pPageKey -> pPageKey.partition().equals(partition));
-        this.pendingPageFutures.keySet().removeIf(pPageKey -> pPageKey.partition().equals(partition));
-        this.debug("Invalidated all page caches for partition: {}", partition);
+    @Nullable
+    private T promote(PartitionedKey<FieldKey> key, PartitionKey partition) {
+        CompactEntityTier<T> tier = this.compactTier;
+        if (tier == null) return null;
+        T entity = tier.promote(key);
+        if (entity == null) return null;
+        this.debug("Entity promoted from compact tier: {}", key);
+        this.cacheEntity(entity, partition);
+        return entity;
+    }
+
+    /**
+     * 开启跨服务器缓存失效
+     * 写操作成功后广播受影响的主键 / @CacheKey 值，并应用其它服务器发出的同类型实体的失效消息。
+     * 传输实例可以被多个仓库共享，由创建者负责关闭
+     * @param transport 传输方式
+     */
+    public synchronized void enableInvalidationBus(@NotNull InvalidationTransport transport) {
+        if (this.invalidationTransport != null) {
+            throw new IllegalStateException("invalidation bus already enabled");
+        }
+        if (this.entityClass == null) {
+            throw new IllegalStateException("could not resolve entity class of repository " + getClass().getSimpleName());
+        }
+        this.invalidationSubscription = transport.subscribe(this::applyRemoteInvalidation);
+        this.invalidationTransport = transport;
+        this.debug("invalidation bus enabled, origin: {}", transport.origin());
+    }
+
+    private RemoteKeys remoteKeys() {
+        return this.invalidationTransport == null ? RemoteKeys.DISABLED : new RemoteKeys();
+    }
+
+    private RemoteKeys remoteKeysOf(T entity) {
+        RemoteKeys keys = this.remoteKeys();
+        keys.add(entity);
+        return keys;
+    }
+
+    private void publishInvalidation(PartitionKey partition, RemoteKeys keys) {
+        InvalidationTransport transport = this.invalidationTransport;
+        if (transport == null || keys == RemoteKeys.DISABLED) return;
+        List<FieldKey> fieldKeys = keys.overflow ? List.of() : keys.keys;
+        transport.publish(new InvalidationMessage(transport.origin(), this.entityClass.getName(), partition, fieldKeys));
+    }
+
+    /**
+     * 应用其它服务器发出的失效消息
+     * @param message 失效消息
+     */
+    private void applyRemoteInvalidation(InvalidationMessage message) {
+        if (this.entityClass == null || !this.entityClass.getName().equals(message.entityType())) return;
+        PartitionKey partition = message.partition();
+        this.debug("Remote invalidation from {}: {}", message.origin(), message);
+        if (partition == null) {
+            this.versions.touchAll();
+            this.clearAllCache();
+            return;
+        }
+        if (message.isWholePartition()) {
+            this.versions.touchPartition(partition);
+            Cache<PartitionedKey<QueryKey>, Long> negative = this.negativeCache;
+            if (negative != null) negative.asMap().keySet().removeIf(key -> partition.equals(key.partition()));
+            this.entityCache.asMap().keySet().removeIf(key -> partition.equals(key.partition()));
+            this.idCache.asMap().keySet().removeIf(key -> partition.equals(key.partition()));
+            CompactEntityTier<T> tier = this.compactTier;
+            if (tier != null) tier.invalidatePartition(partition);
+        } else {
+            EntityAccessor accessor = EntityAccessor.of(this.entityClass);
+            EntityAccessor.Property pk = accessor.primaryKey();
+            this.versions.touch(partition, message.keys());
+            for (FieldKey key : message.keys()) {
+                EntityAccessor.Property property = pk != null && pk.name().equals(key.field()) ? pk : accessor.cacheKey(key.field());
+                if (property == null || key.value() == null) continue;
+                this.invalidateProperty(property, key.value(), partition);
+            }
+        }
+        this.invalidateAllPagesInPartition(partition);
+    }
+
+    /**
+     * 收集需要广播的主键与 @CacheKey 值，数量超过上限后只记录溢出，内存占用固定
+     */
+    private static final class RemoteKeys {
+
+        // 未开启失效广播时使用的空实例，不收集任何键
+        private static final RemoteKeys DISABLED = new RemoteKeys();
+
+        private final List<FieldKey> keys = new ArrayList<>();
+        private boolean overflow;
+
+        void add(Object entity) {
+            if (this == DISABLED || this.overflow || entity == null) return;
+            EntityAccessor accessor = EntityAccessor.of(entity.getClass());
+            EntityAccessor.Property pk = accessor.primaryKey();
+            if (pk != null) this.add(pk, entity);
+            for (EntityAccessor.Property property : accessor.cacheKeys()) {
+                this.add(property, entity);
+            }
+        }
+
+        private void add(EntityAccessor.Property property, Object entity) {
+            Object value = property.get(entity);
+            if (value == null || this.overflow) return;
+            if (this.keys.size() >= MAX_REMOTE_KEYS) {
+                this.overflow = true;
+                this.keys.clear();
+                return;
+            }
+            this.keys.add(property.fieldKey(value));
+        }
+
     }
 
     /**
@@ -459,6 +1490,11 @@ public abstract class EntityRepository<T> {
      */
     public void clearEntityCache() {
         this.entityCache.invalidateAll();
+        this.idCache.invalidateAll();
+        CompactEntityTier<T> tier = this.compactTier;
+        if (tier != null) tier.clear();
+        Cache<PartitionedKey<QueryKey>, Long> negative = this.negativeCache;
+        if (negative != null) negative.invalidateAll();
         this.debug("Entity cache cleared");
     }
 
@@ -498,6 +1534,32 @@ public abstract class EntityRepository<T> {
     public void shutdown() {
         this.debug("shutting down repository, waiting for pending tasks...");
 
+        InvalidationTransport.Subscription subscription = this.invalidationSubscription;
+        if (subscription != null) {
+            subscription.close();
+            this.invalidationSubscription = null;
+        }
+
+        WriteBehindQueue<T> queue = this.writeBehind;
+        if (queue != null) {
+            try {
+                int written = queue.close().get(2, TimeUnit.MINUTES);
+                this.debug("write-behind queue drained, {} rows written.", written);
+            } catch (TimeoutException e) {
+                this.plugin.getLog().warn("timeout draining write-behind queue of {}.", getClass().getSimpleName());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                this.plugin.getLog().warn("interrupted while draining write-behind queue of {}.", getClass().getSimpleName());
+            } catch (ExecutionException e) {
+                this.plugin.getLog().error(e.getCause(), "failed to drain write-behind queue of {}.", getClass().getSimpleName());
+            }
+            WriteBehindStats stats = queue.stats();
+            if (!queue.isEmpty() || stats.droppedTotal() > 0) {
+                this.plugin.getLog().warn("write-behind of {} lost {} pending entities on shutdown (ids: {}), {} entities dropped after repeated failures.",
+                        getClass().getSimpleName(), queue.pendingIds().size(), queue.pendingIds(), stats.droppedTotal());
+            }
+        }
+
         List<CompletableFuture<?>> allPending = new ArrayList<>();
         allPending.addAll(this.pendingEntityFutures.values());
         allPending.addAll(this.pendingPageFutures.values());
@@ -517,14 +1579,17 @@ public abstract class EntityRepository<T> {
                 this.debug("interrupted while waiting for tasks.");
                 return;
             } catch (ExecutionException e) {
-                this.debug("some tasks failed during shutdown: " + e.getCause().getMessage());
+                this.debug("some tasks failed during shutdown: {}", e.getCause().getMessage());
             }
         }
 
         this.pendingEntityFutures.clear();
         this.pendingPageFutures.clear();
 
+        this.writeWarmSnapshot();
+
         this.entityCache.invalidateAll();
+        this.idCache.invalidateAll();
         this.pageCache.invalidateAll();
         this.manager.shutdown();
         this.debug("repository shutdown completed.");
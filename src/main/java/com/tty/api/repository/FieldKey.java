@@ -0,0 +1,17 @@
+package com.tty.api.repository;
+
+import com.tty.api.dto.QueryKey;
+
+/**
+ * 单字段等值键，用于主键与 @CacheKey 的直接索引
+ * 整数类型的值与 QueryKey 一样统一为 Long，按 Integer 查询 Long 类型的主键同样命中索引
+ * @param field 实体属性名
+ * @param value 属性值
+ */
+public record FieldKey(String field, Object value) {
+
+    public FieldKey {
+        value = QueryKey.normalizeValue(value);
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.tty.api.repository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于 Count-Min Sketch 的热点键统计
+ * 计数表大小固定，访问次数达到一定数量后所有计数减半，使统计结果偏向近期的访问；
+ * 候选集合只保留估计访问次数最高的少量键，记录访问时不分配对象。
+ * 每次访问只以 1/SAMPLE_RATE 的概率计入，未抽中的访问不触碰共享的计数表，热点键的访问次数足够多，抽样后排名不变
+ */
+final class HotKeySketch {
+
+    private static final int DEPTH = 4;
+    private static final int WIDTH_BITS = 12;
+    private static final int WIDTH = 1 << WIDTH_BITS;
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    // 抽样率，每 SAMPLE_RATE 次访问平均记录一次
+    private static final int SAMPLE_RATE = 16;
+
+    // 每记录多少次抽中的访问后计数减半，约为 WIDTH * 10 次实际访问
+    private static final int AGING_PERIOD = WIDTH * 10 / SAMPLE_RATE;
+
+    private final AtomicIntegerArray table = new AtomicIntegerArray(DEPTH * WIDTH);
+    private final LongAdder additions = new LongAdder();
+    private final Set<Object> candidates = ConcurrentHashMap.newKeySet();
+    private final int topN;
+
+    // 进入候选集合需要达到的最小估计次数
+    private volatile int threshold = 1;
+
+    HotKeySketch(int topN) {
+        if (topN <= 0) {
+            throw new IllegalArgumentException("topN must be positive");
+        }
+        this.topN = topN;
+    }
+
+    /**
+     * 记录一次访问
+     * @param key 键，需要有稳定的 hashCode
+     */
+    void record(Object key) {
+        if (ThreadLocalRandom.current().nextInt(SAMPLE_RATE) != 0) return;
+        int h = key.hashCode();
+        int estimate = Integer.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = i * WIDTH + indexOf(h, i);
+            estimate = Math.min(estimate, this.table.incrementAndGet(index));
+        }
+        if (estimate >= this.threshold && !this.candidates.contains(key)) {
+            this.candidates.add(key);
+            if (this.candidates.size() > this.topN * 2) {
+                this.prune();
+            }
+        }
+        this.additions.increment();
+        if (this.additions.sum() >= AGING_PERIOD) {
+            this.age();
+        }
+    }
+
+    /**
+     * 估计键被抽中的次数
+     * @param key 键
+     * @return 估计的抽中次数
+     */
+    int estimate(Object key) {
+        int h = key.hashCode();
+        int estimate = Integer.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            estimate = Math.min(estimate, this.table.get(i * WIDTH + indexOf(h, i)));
+        }
+        return estimate;
+    }
+
+    /**
+     * 获取估计访问次数最高的键
+     * @return 按估计次数降序排列的热点键，估计次数已按抽样率换算为访问次数
+     */
+    List<RepositoryMetrics.HotKey> top() {
+        List<RepositoryMetrics.HotKey> result = new ArrayList<>();
+        for (Object key : this.candidates) {
+            result.add(new RepositoryMetrics.HotKey(String.valueOf(key), (long) this.estimate(key) * SAMPLE_RATE));
+        }
+        result.sort(Comparator.comparingLong(RepositoryMetrics.HotKey::estimate).reversed());
+        return result.size() > this.topN ? new ArrayList<>(result.subList(0, this.topN)) : result;
+    }
+
+    void clear() {
+        for (int i = 0; i < this.table.length(); i++) {
+            this.table.set(i, 0);
+        }
+        this.candidates.clear();
+        this.additions.reset();
+        this.threshold = 1;
+    }
+
+    private synchronized void prune() {
+        if (this.candidates.size() <= this.topN * 2) return;
+        List<Object> keys = new ArrayList<>(this.candidates);
+        keys.sort(Comparator.comparingInt(this::estimate).reversed());
+        for (int i = this.topN; i < keys.size(); i++) {
+            this.candidates.remove(keys.get(i));
+        }
+        this.threshold = Math.max(1, this.estimate(keys.get(this.topN - 1)));
+    }
+
+    private synchronized void age() {
+        if (this.additions.sum() < AGING_PERIOD) return;
+        this.additions.reset();
+        for (int i = 0; i < this.table.length(); i++) {
+            this.table.set(i, this.table.get(i) >>> 1);
+        }
+        this.threshold = Math.max(1, this.threshold >>> 1);
+    }
+
+    private static int indexOf(int hash, int row) {
+        return (hash * SEEDS[row]) >>> (32 - WIDTH_BITS);
+    }
+
+}
@@ -0,0 +1,161 @@
+package com.tty.api.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按分区 + 主键 / @CacheKey 值条带化记录最近一次写入的时钟，内存占用固定
+ * 加载开始时记录全局时钟，完成后只检查结果实体自身的键：加载期间这些键没有完成的写入、当前也没有进行中的写入时，结果才能写入缓存。
+ * 同一分区其它实体的写入不影响本次加载；共享同一条带的键会互相影响，这只会少缓存一次，不会产生脏数据
+ */
+final class KeyVersions {
+
+    private static final int KEY_STRIPES = 4096;
+    private static final int PARTITION_STRIPES = 256;
+
+    // 单次写操作逐键记录的上限，超过后改为标记整个分区
+    private static final int MAX_WRITE_KEYS = 256;
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final AtomicLongArray keyWritten = new AtomicLongArray(KEY_STRIPES);
+    private final AtomicIntegerArray keyWriting = new AtomicIntegerArray(KEY_STRIPES);
+
+    // 无法逐键记录的写操作（整个分区失效、匹配行数过多）
+    private final AtomicLongArray partitionWritten = new AtomicLongArray(PARTITION_STRIPES);
+    private final AtomicIntegerArray partitionWriting = new AtomicIntegerArray(PARTITION_STRIPES);
+
+    /**
+     * 获取当前时钟，加载开始前调用
+     * @return 当前时钟
+     */
+    long now() {
+        return this.clock.get();
+    }
+
+    /**
+     * 开始一次写操作，写入的键在 Write#end 之前视为正在写入
+     * @param partition 分区键
+     * @return 写操作
+     */
+    Write begin(PartitionKey partition) {
+        return new Write(partition);
+    }
+
+    /**
+     * 记录已经完成的写入，例如收到其它服务器的失效消息
+     * @param partition 分区键
+     * @param keys 写入的键
+     */
+    void touch(PartitionKey partition, Collection<FieldKey> keys) {
+        if (keys.isEmpty()) return;
+        long stamp = this.clock.incrementAndGet();
+        for (FieldKey key : keys) {
+            this.keyWritten.accumulateAndGet(keyIndex(partition, key), stamp, Math::max);
+        }
+    }
+
+    /**
+     * 记录整个分区已经完成的写入
+     * @param partition 分区键
+     */
+    void touchPartition(PartitionKey partition) {
+        this.partitionWritten.accumulateAndGet(partitionIndex(partition), this.clock.incrementAndGet(), Math::max);
+    }
+
+    /**
+     * 记录所有分区已经完成的写入
+     */
+    void touchAll() {
+        long stamp = this.clock.incrementAndGet();
+        for (int i = 0; i < PARTITION_STRIPES; i++) {
+            this.partitionWritten.accumulateAndGet(i, stamp, Math::max);
+        }
+    }
+
+    /**
+     * 判断在 since 时开始的加载结果能否写入缓存
+     * @param partition 分区键
+     * @param keys 结果实体的键
+     * @param since 加载开始时的时钟
+     * @return 是否可以写入缓存
+     */
+    boolean isStable(PartitionKey partition, Collection<FieldKey> keys, long since) {
+        int p = partitionIndex(partition);
+        if (this.partitionWriting.get(p) != 0 || this.partitionWritten.get(p) > since) return false;
+        for (FieldKey key : keys) {
+            int index = keyIndex(partition, key);
+            if (this.keyWriting.get(index) != 0 || this.keyWritten.get(index) > since) return false;
+        }
+        return true;
+    }
+
+    private static int keyIndex(PartitionKey partition, FieldKey key) {
+        int h = 31 * (partition == null ? 0 : partition.hashCode()) + key.hashCode();
+        h ^= (h >>> 16);
+        return h & (KEY_STRIPES - 1);
+    }
+
+    private static int partitionIndex(PartitionKey partition) {
+        int h = partition == null ? 0 : partition.hashCode();
+        h ^= (h >>> 16);
+        return h & (PARTITION_STRIPES - 1);
+    }
+
+    /**
+     * 进行中的写操作，在数据库提交前登记受影响的键，提交后调用 end
+     */
+    final class Write {
+
+        private final PartitionKey partition;
+        private final List<FieldKey> keys = new ArrayList<>();
+        private boolean wholePartition;
+        private boolean ended;
+
+        private Write(PartitionKey partition) {
+            this.partition = partition;
+        }
+
+        synchronized void add(FieldKey key) {
+            if (this.ended || this.wholePartition || key == null) return;
+            if (this.keys.size() >= MAX_WRITE_KEYS) {
+                this.wholePartition = true;
+                KeyVersions.this.partitionWriting.incrementAndGet(partitionIndex(this.partition));
+                return;
+            }
+            this.keys.add(key);
+            KeyVersions.this.keyWriting.incrementAndGet(keyIndex(this.partition, key));
+        }
+
+        void addAll(Collection<FieldKey> keys) {
+            for (FieldKey key : keys) {
+                this.add(key);
+            }
+        }
+
+        /**
+         * 写操作结束（无论成功与否），登记的键在此之前开始的加载结果都不再写入缓存
+         */
+        synchronized void end() {
+            if (this.ended) return;
+            this.ended = true;
+            long stamp = KeyVersions.this.clock.incrementAndGet();
+            for (FieldKey key : this.keys) {
+                int index = keyIndex(this.partition, key);
+                KeyVersions.this.keyWritten.accumulateAndGet(index, stamp, Math::max);
+                KeyVersions.this.keyWriting.decrementAndGet(index);
+            }
+            if (this.wholePartition) {
+                int index = partitionIndex(this.partition);
+                KeyVersions.this.partitionWritten.accumulateAndGet(index, stamp, Math::max);
+                KeyVersions.this.partitionWriting.decrementAndGet(index);
+            }
+        }
+
+    }
+
+}
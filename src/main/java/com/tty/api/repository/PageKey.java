@@ -2,19 +2,31 @@ package com.tty.api.repository;
 
 import java.util.Objects;
 
-public record PageKey<K>(int pageNum, int pageSize, K queryKey) {
+/**
+ * 分页缓存键
+ * @param pageNum 页码
+ * @param pageSize 每页数量
+ * @param queryKey 查询条件
+ * @param generation 加载时所在分区的代数，分区发生写操作后旧代数的键不会再被命中
+ */
+public record PageKey<K>(int pageNum, int pageSize, K queryKey, long generation) {
+
+    public PageKey(int pageNum, int pageSize, K queryKey) {
+        this(pageNum, pageSize, queryKey, 0L);
+    }
 
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        if (!(o instanceof PageKey<?>(int num, int size, Object key))) return false;
+        if (!(o instanceof PageKey<?>(int num, int size, Object key, long gen))) return false;
         return pageNum == num
                 && pageSize == size
+                && generation == gen
                 && Objects.equals(queryKey, key);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(pageNum, pageSize, queryKey);
+        return Objects.hash(pageNum, pageSize, queryKey, generation);
     }
 }
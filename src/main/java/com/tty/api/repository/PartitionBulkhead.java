@@ -0,0 +1,120 @@
+package com.tty.api.repository;
+
+import com.tty.api.enumType.TaskPriority;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 按分区限制同时进行的数据库加载数
+ * 超过上限的加载在仓库内按优先级排队（同一优先级按提交顺序），不占用数据库执行器的队列，避免单个分区的大量请求挤占其它分区。
+ * 排队的加载由 dispatcher 启动，不在完成上一个加载的数据库线程中执行
+ */
+final class PartitionBulkhead {
+
+    private final int maxConcurrent;
+    private final Executor dispatcher;
+
+    private final ConcurrentHashMap<PartitionKey, Lane> lanes = new ConcurrentHashMap<>();
+
+    // 所有分区中排队等待的加载数
+    private final AtomicInteger queued = new AtomicInteger();
+
+    PartitionBulkhead(int maxConcurrent, Executor dispatcher) {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("maxConcurrent must be positive");
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * 在分区的并发上限内执行加载，超过上限时等待前面的加载完成
+     * @param partition 分区键
+     * @param priority 排队时的优先级
+     * @param load 加载任务
+     * @return 加载结果
+     */
+    <R> CompletableFuture<R> submit(PartitionKey partition, TaskPriority priority, Supplier<CompletableFuture<R>> load) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        while (true) {
+            Lane lane = this.lanes.computeIfAbsent(partition, k -> new Lane());
+            Runnable start = () -> this.start(partition, lane, load, result);
+            synchronized (lane) {
+                // 分区空闲时 lane 会被移除，拿到已移除的 lane 时重新获取
+                if (lane.retired) continue;
+                if (lane.active >= this.maxConcurrent) {
+                    lane.waiting.add(new Waiting(priority, lane.sequence++, start));
+                    this.queued.incrementAndGet();
+                    return result;
+                }
+                lane.active++;
+            }
+            start.run();
+            return result;
+        }
+    }
+
+    private <R> void start(PartitionKey partition, Lane lane, Supplier<CompletableFuture<R>> load, CompletableFuture<R> result) {
+        CompletableFuture<R> future;
+        try {
+            future = load.get();
+        } catch (Throwable e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((value, throwable) -> {
+            this.release(partition, lane);
+            if (throwable != null) {
+                result.completeExceptionally(throwable);
+            } else {
+                result.complete(value);
+            }
+        });
+    }
+
+    private void release(PartitionKey partition, Lane lane) {
+        Runnable next;
+        synchronized (lane) {
+            Waiting waiting = lane.waiting.poll();
+            next = waiting == null ? null : waiting.task();
+            if (next != null) {
+                this.queued.decrementAndGet();
+            } else if (--lane.active == 0) {
+                lane.retired = true;
+                this.lanes.remove(partition, lane);
+            }
+        }
+        if (next == null) return;
+        try {
+            this.dispatcher.execute(next);
+        } catch (RejectedExecutionException e) {
+            next.run();
+        }
+    }
+
+    int queued() {
+        return this.queued.get();
+    }
+
+    private record Waiting(TaskPriority priority, long sequence, Runnable task) {
+
+        private static final Comparator<Waiting> ORDER = Comparator.comparing(Waiting::priority).thenComparingLong(Waiting::sequence);
+
+    }
+
+    private static final class Lane {
+
+        private int active;
+        private boolean retired;
+        private long sequence;
+        private final PriorityQueue<Waiting> waiting = new PriorityQueue<>(Waiting.ORDER);
+
+    }
+
+}
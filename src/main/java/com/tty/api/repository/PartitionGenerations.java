@@ -0,0 +1,51 @@
+package com.tty.api.repository;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分区代数表，按分区哈希条带化存储，内存占用固定
+ * 写操作只需递增所在条带的代数，使该分区旧代数的分页缓存键全部失效；
+ * 共享同一条带的其它分区也会随之失效，这只会多一次数据库查询，不会产生脏数据
+ */
+final class PartitionGenerations {
+
+    private static final int STRIPES = 256;
+
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+
+    /**
+     * 获取分区当前代数
+     * @param partition 分区键
+     * @return 当前代数
+     */
+    long current(PartitionKey partition) {
+        return this.generations.get(index(partition));
+    }
+
+    /**
+     * 递增分区代数
+     * @param partition 分区键
+     * @return 递增后的代数
+     */
+    long advance(PartitionKey partition) {
+        return this.generations.incrementAndGet(index(partition));
+    }
+
+    /**
+     * 判断在指定代数开始的分页加载结果能否写入缓存：加载期间分区没有发生写操作
+     * 写操作在提交后才递增代数，提交前完成的加载以旧代数缓存，递增后自然失效
+     * @param partition 分区键
+     * @param generation 加载开始时的代数
+     * @return 是否可以写入缓存
+     */
+    boolean isStable(PartitionKey partition, long generation) {
+        return this.generations.get(index(partition)) == generation;
+    }
+
+    private static int index(PartitionKey partition) {
+        int h = partition == null ? 0 : partition.hashCode();
+        h ^= (h >>> 16);
+        return h & (STRIPES - 1);
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.tty.api.repository;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.tty.api.utils.DataExecutorStats;
+import com.tty.api.utils.LatencyHistogram;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * 仓库运行指标快照，可用于命令输出或 PlaceholderAPI 扩展
+ * @param repository 仓库名称
+ * @param entityCache 实体缓存统计
+ * @param entityCacheSize 实体缓存当前条目数
+ * @param idCache 主键/缓存键索引统计
+ * @param pageCache 分页缓存统计
+ * @param pageCacheSize 分页缓存当前条目数
+ * @param coalescedLoads 复用进行中加载任务的请求数
+ * @param backgroundRefreshes 后台刷新次数
+ * @param dbLatency 数据库任务耗时，不包含排队时间
+ * @param executor 数据库执行器指标
+ * @param hotKeys 访问次数最高的查询键
+ * @param writeBehind 延迟写入队列状态，未开启时为 null
+ * @param compactTier 紧凑二级缓存状态，未开启时为 null
+ * @param negativeHits 命中不存在结果缓存、未访问数据库的查询数
+ * @param negativeCacheSize 不存在结果缓存当前条目数
+ * @param bulkheadQueued 因分区并发限制在仓库内排队的加载数
+ */
+public record RepositoryMetrics(
+        String repository,
+        CacheStats entityCache,
+        long entityCacheSize,
+        CacheStats idCache,
+        CacheStats pageCache,
+        long pageCacheSize,
+        long coalescedLoads,
+        long backgroundRefreshes,
+        @Nullable LatencyHistogram.Snapshot dbLatency,
+        @Nullable DataExecutorStats executor,
+        List<HotKey> hotKeys,
+        @Nullable WriteBehindStats writeBehind,
+        @Nullable CompactTierStats compactTier,
+        long negativeHits,
+        long negativeCacheSize,
+        int bulkheadQueued) {
+
+    /**
+     * 实体缓存命中率，包括主键/缓存键索引
+     * @return 0 到 1 之间的命中率
+     */
+    public double entityHitRate() {
+        CacheStats combined = this.entityCache.plus(this.idCache);
+        return combined.requestCount() == 0 ? 0 : combined.hitRate();
+    }
+
+    /**
+     * @param key 查询键的可读形式
+     * @param estimate 估计访问次数
+     */
+    public record HotKey(String key, long estimate) {
+    }
+
+}
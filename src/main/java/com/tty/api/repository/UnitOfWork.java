@@ -0,0 +1,224 @@
+package com.tty.api.repository;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tty.api.AbstractJavaPlugin;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 跨仓库的工作单元
+ * 登记的操作在同一个 SqlSession 事务中通过 JDBC 批处理执行，全部成功提交后才更新各仓库的缓存，
+ * 失败时整体回滚且不影响缓存。update 没有匹配到任何行、insert 没有插入行时整体回滚并以 IllegalStateException 失败；
+ * delete 没有匹配到行时不视为失败，但不更新该操作对应的缓存。参与的仓库需要由 BaseDataManager#getMapperClass 提供 Mapper，
+ * 且与传入的 SqlSessionFactory 使用同一个数据库。一个实例只能提交一次
+ * <pre>
+ * new UnitOfWork(plugin, factory)
+ *         .update(playerRepository, from, partition)
+ *         .update(playerRepository, to, partition)
+ *         .insert(logRepository, log, PartitionKey.global())
+ *         .commit();
+ * </pre>
+ */
+public final class UnitOfWork {
+
+    enum Kind {
+        INSERT,
+        UPDATE,
+        DELETE
+    }
+
+    private record Operation<T>(EntityRepository<T> repository, Class<? extends BaseMapper<T>> mapperClass, Kind kind, T entity, PartitionKey partition) {
+    }
+
+    private final AbstractJavaPlugin plugin;
+    private final Supplier<SqlSessionFactory> factorySupplier;
+
+    private final List<Operation<?>> operations = new ArrayList<>();
+    private final List<Consumer<SqlSession>> statements = new ArrayList<>();
+
+    private boolean committed = false;
+
+    public UnitOfWork(@NotNull AbstractJavaPlugin plugin, @NotNull Supplier<SqlSessionFactory> factorySupplier) {
+        this.plugin = plugin;
+        this.factorySupplier = factorySupplier;
+    }
+
+    public <T> UnitOfWork insert(@NotNull EntityRepository<T> repository, @NotNull T entity, PartitionKey partition) {
+        return this.add(repository, Kind.INSERT, entity, partition);
+    }
+
+    /**
+     * 按主键更新实体
+     */
+    public <T> UnitOfWork update(@NotNull EntityRepository<T> repository, @NotNull T entity, PartitionKey partition) {
+        return this.add(repository, Kind.UPDATE, entity, partition);
+    }
+
+    /**
+     * 按主键删除实体
+     */
+    public <T> UnitOfWork delete(@NotNull EntityRepository<T> repository, @NotNull T entity, PartitionKey partition) {
+        return this.add(repository, Kind.DELETE, entity, partition);
+    }
+
+    /**
+     * 在同一事务中执行自定义语句，自定义语句不会更新任何缓存
+     * @param statement 语句
+     * @return 当前工作单元
+     */
+    public synchronized UnitOfWork execute(@NotNull Consumer<SqlSession> statement) {
+        this.checkNotCommitted();
+        this.statements.add(statement);
+        return this;
+    }
+
+    private synchronized <T> UnitOfWork add(EntityRepository<T> repository, Kind kind, T entity, PartitionKey partition) {
+        this.checkNotCommitted();
+        if (repository.manager == null) {
+            throw new IllegalArgumentException(repository.getClass().getSimpleName() + " has no data manager");
+        }
+        Class<? extends BaseMapper<T>> mapperClass = repository.manager.getMapperClass();
+        if (mapperClass == null) {
+            throw new IllegalArgumentException(repository.manager.getClass().getSimpleName() + " does not provide a mapper class");
+        }
+        this.operations.add(new Operation<>(repository, mapperClass, kind, entity, partition == null ? PartitionKey.global() : partition));
+        return this;
+    }
+
+    private void checkNotCommitted() {
+        if (this.committed) {
+            throw new IllegalStateException("unit of work already committed");
+        }
+    }
+
+    /**
+     * 提交所有操作
+     * 先刷新参与仓库的延迟写入队列，再在数据库线程中批量执行并提交；提交成功后按登记顺序更新缓存
+     * @return 提交结果，失败时已回滚
+     */
+    public synchronized CompletableFuture<Void> commit() {
+        this.checkNotCommitted();
+        this.committed = true;
+        List<Operation<?>> ops = List.copyOf(this.operations);
+        List<Consumer<SqlSession>> custom = List.copyOf(this.statements);
+        if (ops.isEmpty() && custom.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Set<EntityRepository<?>> repositories = new LinkedHashSet<>();
+        for (Operation<?> op : ops) {
+            repositories.add(op.repository());
+        }
+        CompletableFuture<?>[] flushes = repositories.stream().map(EntityRepository::flushWriteBehind).toArray(CompletableFuture[]::new);
+
+        return CompletableFuture.allOf(flushes).thenCompose(v -> {
+            // 事务执行期间完成的加载可能读到旧数据，不写入缓存
+            List<KeyVersions.Write> writes = new ArrayList<>(ops.size());
+            for (Operation<?> op : ops) {
+                writes.add(beginUnitOfWork(op));
+            }
+            return this.plugin.getDataExecutor().supply(() -> this.runInTransaction(ops, custom)).whenComplete((counts, throwable) -> {
+                for (int i = 0; i < ops.size(); i++) {
+                    Operation<?> op = ops.get(i);
+                    try {
+                        if (throwable == null && changed(counts[i])) {
+                            applyCommitted(op);
+                        }
+                    } catch (RuntimeException e) {
+                        // 事务已提交，缓存可能与数据库不一致，清空该仓库的缓存，不影响其它仓库
+                        this.plugin.getLog().error(e, "failed to update cache of {} after unit of work, clearing it.", op.repository().getClass().getSimpleName());
+                        op.repository().clearAllCache();
+                    } finally {
+                        op.repository().endUnitOfWork(writes.get(i));
+                    }
+                }
+                if (throwable != null) {
+                    this.plugin.getLog().debug("unit of work rolled back: {}", throwable.getMessage());
+                }
+            });
+        }).thenApply(result -> null);
+    }
+
+    /**
+     * 在一个事务中执行所有操作
+     * @return 每个操作影响的行数，按登记顺序排列，驱动不返回行数时为 Statement#SUCCESS_NO_INFO
+     */
+    private int[] runInTransaction(List<Operation<?>> ops, List<Consumer<SqlSession>> custom) {
+        try (SqlSession session = this.factorySupplier.get().openSession(ExecutorType.BATCH, false)) {
+            try {
+                for (Operation<?> op : ops) {
+                    execute(session, op);
+                }
+                // 先单独刷新登记的操作，批处理结果按执行顺序与操作一一对应
+                int[] counts = updateCounts(session.flushStatements(), ops.size());
+                for (int i = 0; i < ops.size(); i++) {
+                    Operation<?> op = ops.get(i);
+                    if (op.kind() != Kind.DELETE && !changed(counts[i])) {
+                        throw new IllegalStateException("unit of work " + op.kind().name().toLowerCase() + " of " + op.entity() + " matched no row");
+                    }
+                }
+                for (Consumer<SqlSession> statement : custom) {
+                    statement.accept(session);
+                }
+                session.flushStatements();
+                session.commit();
+                return counts;
+            } catch (RuntimeException e) {
+                session.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static int[] updateCounts(List<BatchResult> results, int expected) {
+        int[] counts = new int[expected];
+        int index = 0;
+        for (BatchResult result : results) {
+            for (int count : result.getUpdateCounts()) {
+                if (index < expected) counts[index] = count;
+                index++;
+            }
+        }
+        if (index != expected) {
+            throw new IllegalStateException("unit of work expected " + expected + " batch results but got " + index);
+        }
+        return counts;
+    }
+
+    /**
+     * 判断操作是否影响了数据库中的行，驱动不返回行数时视为已影响
+     */
+    private static boolean changed(int count) {
+        return count > 0 || count == Statement.SUCCESS_NO_INFO;
+    }
+
+    private static <T> void execute(SqlSession session, Operation<T> op) {
+        BaseMapper<T> mapper = session.getMapper(op.mapperClass());
+        switch (op.kind()) {
+            case INSERT -> mapper.insert(op.entity());
+            case UPDATE -> mapper.updateById(op.entity());
+            case DELETE -> mapper.deleteById(op.entity());
+        }
+    }
+
+    private static <T> KeyVersions.Write beginUnitOfWork(Operation<T> op) {
+        return op.repository().beginUnitOfWork(op.entity(), op.partition());
+    }
+
+    private static <T> void applyCommitted(Operation<T> op) {
+        op.repository().applyCommitted(op.kind(), op.entity(), op.partition());
+    }
+
+}
@@ -0,0 +1,191 @@
+package com.tty.api.repository;
+
+import com.tty.api.utils.TypedValueCodec;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 缓存预热快照文件
+ * 文件格式：魔数、版本、实体结构哈希、写入时间、条目数，之后每个条目为 分区类型标记 + 分区值 + 实体 JSON，字符串均以长度前缀的 UTF-8 存储。
+ * 实体类字段发生变化后结构哈希不同，旧快照会被忽略
+ */
+final class WarmSnapshot {
+
+    private static final int MAGIC = 0x54545943;
+    private static final int VERSION = 1;
+
+    private WarmSnapshot() {
+    }
+
+    record Entry<T>(PartitionKey partition, T entity) {
+    }
+
+    /**
+     * 读取结果
+     * @param entries 成功解码的条目
+     * @param skipped 无法解码而跳过的条目数
+     */
+    record Contents<T>(List<Entry<T>> entries, int skipped) {
+
+        static <T> Contents<T> empty() {
+            return new Contents<>(List.of(), 0);
+        }
+
+    }
+
+    private record Encoded(Object partition, byte[] json) {
+    }
+
+    /**
+     * 写入快照，先写入临时文件再替换，写入中途失败不会破坏旧快照
+     * @param path 快照路径
+     * @param entityClass 实体类
+     * @param entries 条目，分区值或实体无法编码的条目会被跳过
+     * @return 写入的条目数
+     * @throws IOException 写入失败
+     */
+    static <T> int write(@NotNull Path path, @NotNull Class<T> entityClass, @NotNull List<Entry<T>> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(entries.size() * 128 + 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        List<Encoded> supported = new ArrayList<>(entries.size());
+        for (Entry<T> entry : entries) {
+            Object value = entry.partition().value();
+            if (!TypedValueCodec.isSupported(value)) continue;
+            // 单个实体编码失败只跳过该实体
+            try {
+                supported.add(new Encoded(value, EntityJson.GSON.toJson(entry.entity()).getBytes(StandardCharsets.UTF_8)));
+            } catch (RuntimeException ignored) {
+            }
+        }
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(schemaHash(entityClass));
+        out.writeLong(System.currentTimeMillis());
+        out.writeInt(supported.size());
+        for (Encoded entry : supported) {
+            Object value = entry.partition();
+            out.writeByte(value == null ? 'N' : TypedValueCodec.tagOf(value));
+            byte[] text = (value == null ? "" : String.valueOf(value)).getBytes(StandardCharsets.UTF_8);
+            out.writeInt(text.length);
+            out.write(text);
+            out.writeInt(entry.json().length);
+            out.write(entry.json());
+        }
+        out.flush();
+
+        Files.createDirectories(path.getParent());
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return supported.size();
+    }
+
+    /**
+     * 读取快照
+     * @param path 快照路径
+     * @param entityClass 实体类
+     * @param maxAge 快照最长有效时间，超过后视为过期
+     * @return 读取结果，文件不存在、结构哈希不一致或已过期时为空；单个条目无法解码时跳过该条目
+     * @throws IOException 读取失败或文件结构损坏
+     */
+    static <T> Contents<T> read(@NotNull Path path, @NotNull Class<T> entityClass, @NotNull Duration maxAge) throws IOException {
+        if (!Files.isRegularFile(path)) return Contents.empty();
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("snapshot too large: " + size);
+            buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // 读取到缓冲区填满
+            }
+            buffer.flip();
+        }
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) return Contents.empty();
+            if (buffer.getLong() != schemaHash(entityClass)) return Contents.empty();
+            long writtenAt = buffer.getLong();
+            if (System.currentTimeMillis() - writtenAt > maxAge.toMillis()) return Contents.empty();
+            int count = buffer.getInt();
+            List<Entry<T>> entries = new ArrayList<>(Math.max(0, Math.min(count, 100_000)));
+            int skipped = 0;
+            for (int i = 0; i < count; i++) {
+                // 条目以长度前缀存储，先完整读出再解码，单个条目解码失败不影响后续条目
+                char tag = (char) buffer.get();
+                String partitionText = readString(buffer);
+                byte[] json = new byte[buffer.getInt()];
+                buffer.get(json);
+                try {
+                    Object partitionValue = TypedValueCodec.parse(tag, partitionText);
+                    T entity = EntityJson.GSON.fromJson(new String(json, StandardCharsets.UTF_8), entityClass);
+                    if (entity != null) {
+                        entries.add(new Entry<>(PartitionKey.of(partitionValue), entity));
+                        continue;
+                    }
+                } catch (RuntimeException ignored) {
+                }
+                skipped++;
+            }
+            return new Contents<>(entries, skipped);
+        } catch (RuntimeException e) {
+            throw new IOException("corrupted snapshot " + path, e);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 根据实体类名与所有实例字段的名称、类型计算结构哈希（FNV-1a 64 位）
+     * @param entityClass 实体类
+     * @return 结构哈希
+     */
+    static long schemaHash(Class<?> entityClass) {
+        List<Field> fields = new ArrayList<>();
+        Class<?> current = entityClass;
+        while (current != null && current != Object.class) {
+            for (Field field : current.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) continue;
+                fields.add(field);
+            }
+            current = current.getSuperclass();
+        }
+        fields.sort(Comparator.comparing(Field::getName));
+        StringBuilder sb = new StringBuilder(entityClass.getName());
+        for (Field field : fields) {
+            sb.append(';').append(field.getName()).append(':').append(field.getGenericType().getTypeName());
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : sb.toString().getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+}
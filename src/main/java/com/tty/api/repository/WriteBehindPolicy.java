@@ -0,0 +1,25 @@
+package com.tty.api.repository;
+
+/**
+ * 延迟写入策略
+ * @param batchSize 队列中待写入的实体数量达到该值时立即刷新
+ * @param flushIntervalTicks 定时刷新的间隔，单位 tick
+ * @param maxAttempts 单个实体因自身数据（约束冲突、非法值）写入失败的最大次数，达到后丢弃该实体；数据库不可用等暂时性失败不计入
+ */
+public record WriteBehindPolicy(int batchSize, long flushIntervalTicks, int maxAttempts) {
+
+    public WriteBehindPolicy {
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be > 0");
+        if (flushIntervalTicks <= 0) throw new IllegalArgumentException("flushIntervalTicks must be > 0");
+        if (maxAttempts <= 0) throw new IllegalArgumentException("maxAttempts must be > 0");
+    }
+
+    public WriteBehindPolicy(int batchSize, long flushIntervalTicks) {
+        this(batchSize, flushIntervalTicks, 3);
+    }
+
+    public static WriteBehindPolicy defaults() {
+        return new WriteBehindPolicy(200, 20L);
+    }
+
+}
@@ -0,0 +1,288 @@
+package com.tty.api.repository;
+
+import com.tty.api.AbstractJavaPlugin;
+import com.tty.api.scheduler.RunTask;
+import com.tty.api.utils.BaseDataManager;
+
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 延迟写入队列
+ * 按主键合并待写入的实体，同一主键后写入的实体覆盖先写入的实体，按数量阈值或定时批量刷新到数据库。
+ * 批量写入因数据问题失败时二分重试，定位到无法写入的实体，该实体失败达到 maxAttempts 次后丢弃，不阻塞其它实体；
+ * 数据库不可用等暂时性失败整批重新入队，不计入失败次数
+ */
+final class WriteBehindQueue<T> {
+
+    /**
+     * 队列中的实体
+     * @param entity 实体
+     * @param previous 第一次入队时缓存中的旧实体，用于提交后广播旧的缓存键，未缓存时为 null
+     * @param partition 写入时的分区
+     * @param attempts 因自身数据写入失败的次数
+     */
+    record Entry<T>(T entity, T previous, PartitionKey partition, int attempts) {
+
+        Entry<T> retried() {
+            return new Entry<>(this.entity, this.previous, this.partition, this.attempts + 1);
+        }
+
+    }
+
+    /**
+     * 批量写入的回调
+     */
+    @FunctionalInterface
+    interface FlushListener<T> {
+
+        /**
+         * 批量写入开始前调用
+         * @param batch 本次写入的实体
+         * @return 批量写入结束后、实体从写入中集合移除前调用的回调，参数为是否写入成功，失败时实体已重新入队
+         */
+        Consumer<Boolean> beforeFlush(Collection<Entry<T>> batch);
+
+    }
+
+    private final AbstractJavaPlugin plugin;
+    private final BaseDataManager<T> manager;
+    private final WriteBehindPolicy policy;
+    private final FlushListener<T> listener;
+    private final Consumer<Entry<T>> dropListener;
+
+    private final ConcurrentHashMap<Object, Entry<T>> pending = new ConcurrentHashMap<>();
+
+    // 已取出但尚未提交的实体，提交前仍对读取可见，避免缓存未命中时从数据库加载到旧值
+    private final ConcurrentHashMap<Object, Entry<T>> inFlight = new ConcurrentHashMap<>();
+
+    // 刷新按顺序串行执行，避免同一主键的新旧两次写入乱序提交
+    private final Object flushLock = new Object();
+    private CompletableFuture<Integer> flushChain = CompletableFuture.completedFuture(0);
+
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+
+    private final LongAdder flushCount = new LongAdder();
+    private final LongAdder flushedTotal = new LongAdder();
+    private final LongAdder failedTotal = new LongAdder();
+    private final LongAdder droppedTotal = new LongAdder();
+    private volatile long lastFlushNanos;
+
+    // 暂时性失败只在开始失败时记录一次错误，恢复后再记录一次
+    private volatile boolean unavailable;
+
+    private final RunTask flushTask;
+
+    /**
+     * @param listener 批量写入的回调
+     * @param dropListener 实体多次写入失败被丢弃后调用，实体从写入中集合移除前执行
+     */
+    WriteBehindQueue(AbstractJavaPlugin plugin, BaseDataManager<T> manager, WriteBehindPolicy policy, FlushListener<T> listener, Consumer<Entry<T>> dropListener) {
+        this.plugin = plugin;
+        this.manager = manager;
+        this.policy = policy;
+        this.listener = listener;
+        this.dropListener = dropListener;
+        this.flushTask = plugin.getScheduler().runAsyncAtFixedRate(i -> this.flush(), policy.flushIntervalTicks(), policy.flushIntervalTicks());
+    }
+
+    /**
+     * 将实体加入队列，覆盖同一主键下尚未写入的实体
+     * @param id 主键值
+     * @param entity 实体
+     * @param previous 缓存中的旧实体
+     * @param partition 分区键
+     */
+    void enqueue(Object id, T entity, T previous, PartitionKey partition) {
+        // 合并时保留最早的旧实体，它才是其它服务器可能缓存的值
+        this.pending.merge(id, new Entry<>(entity, previous, partition, 0),
+                (queued, next) -> queued.previous() == null ? next : new Entry<>(next.entity(), queued.previous(), next.partition(), 0));
+        if (this.pending.size() >= this.policy.batchSize() && this.flushRequested.compareAndSet(false, true)) {
+            CompletableFuture.runAsync(() -> this.flush().whenComplete((count, ex) -> this.flushRequested.set(false)), this.plugin.getExecutorAsync());
+        }
+    }
+
+    /**
+     * 获取尚未提交到数据库的实体，包括正在写入的实体
+     * @param id 主键值
+     * @return 实体，不存在时为 null
+     */
+    T peek(Object id) {
+        Entry<T> entry = this.pending.get(id);
+        if (entry == null) entry = this.inFlight.get(id);
+        return entry == null ? null : entry.entity();
+    }
+
+    boolean isEmpty() {
+        return this.pending.isEmpty() && this.inFlight.isEmpty();
+    }
+
+    /**
+     * 获取尚未写入数据库的实体主键
+     * @return 主键
+     */
+    Set<Object> pendingIds() {
+        Set<Object> ids = new LinkedHashSet<>(this.pending.keySet());
+        ids.addAll(this.inFlight.keySet());
+        return ids;
+    }
+
+    /**
+     * 在已有刷新之后追加一次刷新
+     * @return 本次写入的行数
+     */
+    CompletableFuture<Integer> flush() {
+        synchronized (this.flushLock) {
+            this.flushChain = this.flushChain.exceptionally(ex -> 0).thenCompose(v -> this.flushOnce());
+            return this.flushChain;
+        }
+    }
+
+    private CompletableFuture<Integer> flushOnce() {
+        if (this.pending.isEmpty()) return CompletableFuture.completedFuture(0);
+
+        Map<Object, Entry<T>> batch = new LinkedHashMap<>();
+        for (Map.Entry<Object, Entry<T>> entry : this.pending.entrySet()) {
+            // 先放入写入中集合再从队列移除，读取在任意时刻都能看到该实体
+            this.inFlight.put(entry.getKey(), entry.getValue());
+            // 只取出未被新写入覆盖的实体，被覆盖的留给下一次刷新
+            if (this.pending.remove(entry.getKey(), entry.getValue())) {
+                batch.put(entry.getKey(), entry.getValue());
+            } else {
+                this.inFlight.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        if (batch.isEmpty()) return CompletableFuture.completedFuture(0);
+
+        long start = System.nanoTime();
+        return this.write(new ArrayList<>(batch.entrySet())).whenComplete((count, ex) -> {
+            this.lastFlushNanos = System.nanoTime() - start;
+            this.flushCount.increment();
+        });
+    }
+
+    /**
+     * 写入一批实体
+     * 因数据问题失败时拆成两半分别写入，直到定位到无法写入的单个实体；暂时性失败时整批重新入队
+     * @param batch 主键与实体
+     * @return 成功写入的行数
+     */
+    private CompletableFuture<Integer> write(List<Map.Entry<Object, Entry<T>>> batch) {
+        List<Entry<T>> entries = batch.stream().map(Map.Entry::getValue).toList();
+        Consumer<Boolean> completion = this.listener.beforeFlush(entries);
+        CompletableFuture<Integer> write;
+        try {
+            write = this.manager.updateBatchById(entries.stream().map(Entry::entity).toList());
+        } catch (RuntimeException e) {
+            write = CompletableFuture.failedFuture(e);
+        }
+        return write.handle((count, ex) -> {
+            if (ex == null) {
+                this.flushedTotal.add(batch.size());
+                if (this.unavailable) {
+                    this.unavailable = false;
+                    this.plugin.getLog().info("write-behind flush recovered.");
+                }
+                this.complete(batch, completion, true);
+                return CompletableFuture.completedFuture(count);
+            }
+            if (isTransient(ex)) {
+                this.failedTotal.add(batch.size());
+                if (!this.unavailable) {
+                    this.unavailable = true;
+                    this.plugin.getLog().error(ex, "write-behind flush failed, {} entities re-queued until the database is available.", batch.size());
+                }
+                batch.forEach(entry -> this.pending.putIfAbsent(entry.getKey(), entry.getValue()));
+                this.complete(batch, completion, false);
+                return CompletableFuture.completedFuture(0);
+            }
+            if (batch.size() > 1) {
+                // 实体仍留在写入中集合，拆分后的写入各自提交后再移除
+                completion.accept(false);
+                int half = batch.size() / 2;
+                return this.write(batch.subList(0, half)).thenCompose(first -> this.write(batch.subList(half, batch.size())).thenApply(second -> first + second));
+            }
+            Map.Entry<Object, Entry<T>> only = batch.getFirst();
+            Entry<T> failed = only.getValue().retried();
+            this.failedTotal.increment();
+            if (failed.attempts() >= this.policy.maxAttempts()) {
+                this.droppedTotal.increment();
+                this.plugin.getLog().error(ex, "write-behind dropped entity {} after {} failed attempts: {}", only.getKey(), failed.attempts(), failed.entity());
+                try {
+                    this.dropListener.accept(failed);
+                } catch (RuntimeException e) {
+                    this.plugin.getLog().error(e, "failed to handle dropped write-behind entity {}.", only.getKey());
+                }
+            } else {
+                this.plugin.getLog().warn(ex, "write-behind failed to write entity {}, attempt {} of {}, re-queued.", only.getKey(), failed.attempts(), this.policy.maxAttempts());
+                this.pending.putIfAbsent(only.getKey(), failed);
+            }
+            this.complete(batch, completion, false);
+            return CompletableFuture.completedFuture(0);
+        }).thenCompose(Function.identity());
+    }
+
+    private void complete(List<Map.Entry<Object, Entry<T>>> batch, Consumer<Boolean> completion, boolean committed) {
+        try {
+            completion.accept(committed);
+        } finally {
+            // 提交完成后才从写入中集合移除
+            batch.forEach(entry -> this.inFlight.remove(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    /**
+     * 判断写入失败是否为暂时性的（连接断开、连接池超时、执行器拒绝），与实体数据无关
+     * @param ex 异常
+     * @return 是否为暂时性失败
+     */
+    private static boolean isTransient(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientException
+                    || cause instanceof SQLRecoverableException
+                    || cause instanceof SQLNonTransientConnectionException
+                    || cause instanceof RejectedExecutionException
+                    || cause instanceof TimeoutException) {
+                return true;
+            }
+            if (cause.getCause() == cause) break;
+        }
+        return false;
+    }
+
+    /**
+     * 停止定时刷新并将队列中剩余的实体全部写入
+     * @return 写入完成的 future
+     */
+    CompletableFuture<Integer> close() {
+        if (this.flushTask != null) {
+            this.flushTask.cancel();
+        }
+        // 刷新期间被覆盖或写入失败重新入队的实体继续尝试，直到失败的实体达到最大次数被丢弃；数据库不可用时不再重试
+        return this.drain(this.policy.maxAttempts() + 1);
+    }
+
+    private CompletableFuture<Integer> drain(int rounds) {
+        return this.flush().thenCompose(count -> this.pending.isEmpty() || rounds <= 1 || this.unavailable
+                ? CompletableFuture.completedFuture(count)
+                : this.drain(rounds - 1).thenApply(more -> count + more));
+    }
+
+    WriteBehindStats stats() {
+        return new WriteBehindStats(
+                this.pending.size(),
+                this.lastFlushNanos / 1_000_000.0,
+                this.flushCount.sum(),
+                this.flushedTotal.sum(),
+                this.failedTotal.sum(),
+                this.droppedTotal.sum());
+    }
+
+}
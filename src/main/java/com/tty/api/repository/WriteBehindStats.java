@@ -0,0 +1,13 @@
+package com.tty.api.repository;
+
+/**
+ * 延迟写入队列的运行状态
+ * @param queueDepth 当前等待写入的实体数量
+ * @param lastFlushMillis 最近一次刷新的耗时，单位毫秒
+ * @param flushCount 已执行的刷新次数
+ * @param flushedTotal 已成功写入的实体总数
+ * @param failedTotal 写入失败后重新入队的实体总数
+ * @param droppedTotal 多次写入失败后被丢弃的实体总数
+ */
+public record WriteBehindStats(int queueDepth, double lastFlushMillis, long flushCount, long flushedTotal, long failedTotal, long droppedTotal) {
+}
@@ -0,0 +1,38 @@
+package com.tty.api.repository.invalidation;
+
+import com.tty.api.repository.FieldKey;
+import com.tty.api.repository.PartitionKey;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * 缓存失效消息
+ * @param origin 发出消息的节点标识，节点不会处理自己发出的消息
+ * @param entityType 实体类全名
+ * @param partition 分区，为 null 时表示该实体类型的所有分区
+ * @param keys 需要失效的主键 / @CacheKey 字段值，为空时表示整个分区
+ */
+public record InvalidationMessage(@NotNull String origin, @NotNull String entityType, @Nullable PartitionKey partition, @NotNull List<FieldKey> keys) {
+
+    public InvalidationMessage {
+        keys = List.copyOf(keys);
+    }
+
+    /**
+     * 使整个分区失效的消息
+     * @param origin 节点标识
+     * @param entityType 实体类全名
+     * @param partition 分区，为 null 时表示所有分区
+     * @return 消息
+     */
+    public static InvalidationMessage wholePartition(@NotNull String origin, @NotNull String entityType, @Nullable PartitionKey partition) {
+        return new InvalidationMessage(origin, entityType, partition, List.of());
+    }
+
+    public boolean isWholePartition() {
+        return this.keys.isEmpty();
+    }
+
+}
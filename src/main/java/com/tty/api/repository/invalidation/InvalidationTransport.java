@@ -0,0 +1,45 @@
+package com.tty.api.repository.invalidation;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.Consumer;
+
+/**
+ * 跨服务器缓存失效消息的传输方式
+ * 同一个传输实例可以被多个 EntityRepository 共享，每个仓库只处理自己实体类型的消息
+ */
+public interface InvalidationTransport extends AutoCloseable {
+
+    /**
+     * 当前节点标识，发出的消息会带上该标识
+     * @return 节点标识
+     */
+    @NotNull String origin();
+
+    /**
+     * 广播失效消息，不应阻塞调用线程
+     * @param message 消息
+     */
+    void publish(@NotNull InvalidationMessage message);
+
+    /**
+     * 订阅其它节点发出的失效消息
+     * @param listener 消息处理逻辑
+     * @return 取消订阅的句柄
+     */
+    @NotNull Subscription subscribe(@NotNull Consumer<InvalidationMessage> listener);
+
+    /**
+     * 关闭传输，停止接收消息
+     */
+    @Override
+    void close();
+
+    interface Subscription extends AutoCloseable {
+
+        @Override
+        void close();
+
+    }
+
+}
@@ -0,0 +1,296 @@
+package com.tty.api.repository.invalidation;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.tty.api.AbstractJavaPlugin;
+import com.tty.api.enumType.SQLType;
+import com.tty.api.repository.FieldKey;
+import com.tty.api.repository.PartitionKey;
+import com.tty.api.scheduler.RunTask;
+import com.tty.api.utils.TypedValueCodec;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * 基于数据库失效日志表的传输，所有服务器连接同一个数据库时无需额外的消息中间件
+ * 写操作成功后插入一行失效记录，各节点定时读取比上次更新的记录并应用，过期的记录会被定期清理。
+ * 自增主键的提交顺序与分配顺序可能不同，读取时跳过的主键会被记录下来，在之后的轮询中补读
+ */
+public final class JdbcInvalidationTransport implements InvalidationTransport {
+
+    private static final Pattern TABLE_PATTERN = Pattern.compile("[A-Za-z0-9_]+");
+
+    // 每次轮询读取的最大记录数
+    private static final int POLL_LIMIT = 500;
+
+    // 失效记录保留时间
+    private static final long RETENTION_MILLIS = 10 * 60 * 1000L;
+
+    // 清理过期记录的间隔
+    private static final long CLEANUP_INTERVAL_MILLIS = 60 * 1000L;
+
+    // 被跳过的主键等待补读的最长时间，超过后视为插入已回滚
+    private static final long GAP_TIMEOUT_MILLIS = 60 * 1000L;
+
+    // 最多同时等待补读的主键数
+    private static final int MAX_GAPS = 500;
+
+    private static final String SELECT_COLUMNS = "SELECT id, origin, entity_type, payload FROM ";
+
+    private final String origin = UUID.randomUUID().toString();
+
+    private final AbstractJavaPlugin plugin;
+    private final Supplier<SqlSessionFactory> factorySupplier;
+    private final SQLType sqlType;
+    private final String table;
+    private final long pollIntervalTicks;
+
+    private final List<Consumer<InvalidationMessage>> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean polling = new AtomicBoolean(false);
+
+    private volatile long lastId = -1;
+
+    // 小于 lastId 但尚未读到的主键与发现时间，只在轮询中访问
+    private final Map<Long, Long> gaps = new LinkedHashMap<>();
+    private volatile long lastCleanup = 0;
+    private volatile RunTask pollTask;
+
+    /**
+     * @param plugin 插件实例
+     * @param factorySupplier SqlSessionFactory 提供者
+     * @param sqlType 数据库类型，用于建表语句
+     * @param table 失效日志表名
+     * @param pollIntervalTicks 轮询间隔（tick）
+     */
+    public JdbcInvalidationTransport(@NotNull AbstractJavaPlugin plugin, @NotNull Supplier<SqlSessionFactory> factorySupplier, @NotNull SQLType sqlType, @NotNull String table, long pollIntervalTicks) {
+        if (!TABLE_PATTERN.matcher(table).matches()) {
+            throw new IllegalArgumentException("invalid table name: " + table);
+        }
+        if (pollIntervalTicks <= 0) {
+            throw new IllegalArgumentException("pollIntervalTicks must be positive");
+        }
+        this.plugin = plugin;
+        this.factorySupplier = factorySupplier;
+        this.sqlType = sqlType;
+        this.table = table;
+        this.pollIntervalTicks = pollIntervalTicks;
+    }
+
+    public JdbcInvalidationTransport(@NotNull AbstractJavaPlugin plugin, @NotNull Supplier<SqlSessionFactory> factorySupplier, @NotNull SQLType sqlType) {
+        this(plugin, factorySupplier, sqlType, "tty_cache_invalidation", 20L);
+    }
+
+    /**
+     * 建表并开始轮询，只处理启动之后产生的记录
+     */
+    public synchronized void start() {
+        if (this.pollTask != null) return;
+        try (SqlSession session = this.factorySupplier.get().openSession(true);
+             Statement statement = session.getConnection().createStatement()) {
+            statement.execute(this.createTableSql());
+            try (ResultSet rs = statement.executeQuery("SELECT MAX(id) FROM " + this.table)) {
+                this.lastId = rs.next() ? rs.getLong(1) : 0;
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("could not initialize invalidation table " + this.table, e);
+        }
+        this.pollTask = this.plugin.getScheduler().runAsyncAtFixedRate(task -> {
+            if (task.isCancelled()) return;
+            this.poll();
+        }, this.pollIntervalTicks, this.pollIntervalTicks);
+    }
+
+    private String createTableSql() {
+        if (this.sqlType == SQLType.SQLITE) {
+            return "CREATE TABLE IF NOT EXISTS " + this.table + " (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "origin VARCHAR(36) NOT NULL, " +
+                    "entity_type VARCHAR(255) NOT NULL, " +
+                    "payload TEXT NOT NULL, " +
+                    "created_at BIGINT NOT NULL)";
+        }
+        return "CREATE TABLE IF NOT EXISTS " + this.table + " (" +
+                "id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY, " +
+                "origin VARCHAR(36) NOT NULL, " +
+                "entity_type VARCHAR(255) NOT NULL, " +
+                "payload TEXT NOT NULL, " +
+                "created_at BIGINT NOT NULL, " +
+                "INDEX idx_created_at (created_at))";
+    }
+
+    @Override
+    public @NotNull String origin() {
+        return this.origin;
+    }
+
+    @Override
+    public void publish(@NotNull InvalidationMessage message) {
+        String payload = encodePayload(message);
+        this.plugin.getDataExecutor().supply(() -> {
+            try (SqlSession session = this.factorySupplier.get().openSession(true);
+                 PreparedStatement statement = session.getConnection().prepareStatement("INSERT INTO " + this.table + " (origin, entity_type, payload, created_at) VALUES (?, ?, ?, ?)")) {
+                statement.setString(1, message.origin());
+                statement.setString(2, message.entityType());
+                statement.setString(3, payload);
+                statement.setLong(4, System.currentTimeMillis());
+                statement.executeUpdate();
+                return null;
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }).exceptionally(e -> {
+            this.plugin.getLog().error(e, "failed to publish cache invalidation for {}", message.entityType());
+            return null;
+        });
+    }
+
+    private void poll() {
+        if (this.lastId < 0 || !this.polling.compareAndSet(false, true)) return;
+        try (SqlSession session = this.factorySupplier.get().openSession(true)) {
+            Connection connection = session.getConnection();
+            List<InvalidationMessage> messages = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            this.pollGaps(connection, now, messages);
+
+            long maxId = this.lastId;
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_COLUMNS + this.table + " WHERE id > ? ORDER BY id LIMIT " + POLL_LIMIT)) {
+                statement.setLong(1, this.lastId);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        long id = rs.getLong(1);
+                        // 中间缺少的主键可能属于尚未提交的插入
+                        for (long missing = maxId + 1; missing < id && this.gaps.size() < MAX_GAPS; missing++) {
+                            this.gaps.put(missing, now);
+                        }
+                        maxId = id;
+                        this.read(rs, id, messages);
+                    }
+                }
+            }
+            this.lastId = maxId;
+
+            if (now - this.lastCleanup >= CLEANUP_INTERVAL_MILLIS) {
+                this.lastCleanup = now;
+                try (PreparedStatement statement = connection.prepareStatement("DELETE FROM " + this.table + " WHERE created_at < ?")) {
+                    statement.setLong(1, now - RETENTION_MILLIS);
+                    statement.executeUpdate();
+                }
+            }
+
+            for (InvalidationMessage message : messages) {
+                for (Consumer<InvalidationMessage> listener : this.listeners) {
+                    listener.accept(message);
+                }
+            }
+        } catch (Exception e) {
+            this.plugin.getLog().error(e, "failed to poll cache invalidation table {}", this.table);
+        } finally {
+            this.polling.set(false);
+        }
+    }
+
+    /**
+     * 补读之前被跳过的主键，超时的主键不再等待
+     * @param connection 数据库连接
+     * @param now 当前时间
+     * @param messages 读取到的消息
+     */
+    private void pollGaps(Connection connection, long now, List<InvalidationMessage> messages) throws SQLException {
+        this.gaps.values().removeIf(since -> now - since > GAP_TIMEOUT_MILLIS);
+        if (this.gaps.isEmpty()) return;
+        List<Long> ids = new ArrayList<>(this.gaps.keySet());
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_COLUMNS + this.table + " WHERE id IN (" + placeholders + ") ORDER BY id")) {
+            for (int i = 0; i < ids.size(); i++) {
+                statement.setLong(i + 1, ids.get(i));
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    long id = rs.getLong(1);
+                    this.gaps.remove(id);
+                    this.read(rs, id, messages);
+                }
+            }
+        }
+    }
+
+    private void read(ResultSet rs, long id, List<InvalidationMessage> messages) throws SQLException {
+        String messageOrigin = rs.getString(2);
+        if (this.origin.equals(messageOrigin)) return;
+        try {
+            messages.add(decodePayload(messageOrigin, rs.getString(3), rs.getString(4)));
+        } catch (RuntimeException e) {
+            this.plugin.getLog().warn(e, "skipping malformed cache invalidation record {}", id);
+        }
+    }
+
+    @Override
+    public @NotNull Subscription subscribe(@NotNull Consumer<InvalidationMessage> listener) {
+        this.listeners.add(listener);
+        return () -> this.listeners.remove(listener);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (this.pollTask != null) {
+            this.pollTask.cancel();
+            this.pollTask = null;
+        }
+        this.listeners.clear();
+    }
+
+    /**
+     * 将分区与键值编码为 JSON，无法编码的分区降级为所有分区，无法编码的键值降级为整个分区
+     * @param message 消息
+     * @return JSON 字符串
+     */
+    static String encodePayload(InvalidationMessage message) {
+        JsonObject json = new JsonObject();
+        PartitionKey partition = message.partition();
+        if (partition == null || !TypedValueCodec.isSupported(partition.value())) {
+            return json.toString();
+        }
+        json.addProperty("p", TypedValueCodec.encode(partition.value()));
+        JsonArray keys = new JsonArray();
+        for (FieldKey key : message.keys()) {
+            if (!TypedValueCodec.isSupported(key.value())) {
+                keys = new JsonArray();
+                break;
+            }
+            JsonArray pair = new JsonArray();
+            pair.add(key.field());
+            pair.add(TypedValueCodec.encode(key.value()));
+            keys.add(pair);
+        }
+        json.add("k", keys);
+        return json.toString();
+    }
+
+    static InvalidationMessage decodePayload(String origin, String entityType, String payload) {
+        JsonObject json = JsonParser.parseString(payload).getAsJsonObject();
+        if (!json.has("p")) {
+            return InvalidationMessage.wholePartition(origin, entityType, null);
+        }
+        PartitionKey partition = PartitionKey.of(TypedValueCodec.decode(json.get("p").getAsString()));
+        List<FieldKey> keys = new ArrayList<>();
+        if (json.has("k")) {
+            for (JsonElement element : json.getAsJsonArray("k")) {
+                JsonArray pair = element.getAsJsonArray();
+                keys.add(new FieldKey(pair.get(0).getAsString(), TypedValueCodec.decode(pair.get(1).getAsString())));
+            }
+        }
+        return new InvalidationMessage(origin, entityType, partition, keys);
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.tty.api.repository.invalidation;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 进程内传输，消息直接投递给同一组内的其它节点
+ * 用于在单机上模拟多台服务器，通过 connect 创建同组的新节点
+ */
+public final class LoopbackInvalidationTransport implements InvalidationTransport {
+
+    private final String origin = UUID.randomUUID().toString();
+
+    private final List<LoopbackInvalidationTransport> group;
+
+    private final List<Consumer<InvalidationMessage>> listeners = new CopyOnWriteArrayList<>();
+
+    public LoopbackInvalidationTransport() {
+        this(new CopyOnWriteArrayList<>());
+    }
+
+    private LoopbackInvalidationTransport(List<LoopbackInvalidationTransport> group) {
+        this.group = group;
+        this.group.add(this);
+    }
+
+    /**
+     * 创建同一组内的另一个节点
+     * @return 新节点
+     */
+    public LoopbackInvalidationTransport connect() {
+        return new LoopbackInvalidationTransport(this.group);
+    }
+
+    @Override
+    public @NotNull String origin() {
+        return this.origin;
+    }
+
+    @Override
+    public void publish(@NotNull InvalidationMessage message) {
+        for (LoopbackInvalidationTransport peer : this.group) {
+            if (peer == this) continue;
+            peer.deliver(message);
+        }
+    }
+
+    private void deliver(InvalidationMessage message) {
+        for (Consumer<InvalidationMessage> listener : this.listeners) {
+            listener.accept(message);
+        }
+    }
+
+    @Override
+    public @NotNull Subscription subscribe(@NotNull Consumer<InvalidationMessage> listener) {
+        this.listeners.add(listener);
+        return () -> this.listeners.remove(listener);
+    }
+
+    @Override
+    public void close() {
+        this.group.remove(this);
+        this.listeners.clear();
+    }
+
+}
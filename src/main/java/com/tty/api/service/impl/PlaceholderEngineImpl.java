@@ -1,158 +1,212 @@
 package com.tty.api.service.impl;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tty.api.enumType.OverflowPolicy;
+import com.tty.api.event.WhenPluginConfigReloadCompleteEvent;
+import com.tty.api.service.placeholder.CompiledTemplate;
 import com.tty.api.service.placeholder.PlaceholderEngine;
 import com.tty.api.service.placeholder.PlaceholderRegistry;
+import com.tty.api.utils.DataExecutor;
+import com.tty.api.utils.DataExecutorStats;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.JoinConfiguration;
 import org.bukkit.OfflinePlayer;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
-public class PlaceholderEngineImpl implements PlaceholderEngine {
+public class PlaceholderEngineImpl implements PlaceholderEngine, Listener {
 
-    private static final Pattern PATTERN = Pattern.compile("<([a-z0-9_]+)>");
+    // 解析后的模板，键为模板内容；经 PlaceholderAPI 替换后发生变化的行、占位符的值与纯文本不进入缓存
+    private final Cache<String, CompiledTemplate> templates = Caffeine.newBuilder().maximumSize(4096).build();
 
-    private final ExecutorService executor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+    private final DataExecutor executor;
 
     private final PlaceholderRegistry registry;
 
     public PlaceholderEngineImpl(PlaceholderRegistry registry) {
+        this(registry, DataExecutor.bounded("tty-placeholder", Math.min(4, Math.max(2, Runtime.getRuntime().availableProcessors())), 256, OverflowPolicy.CALLER_RUNS));
+    }
+
+    /**
+     * @param registry 插件自定义占位符
+     * @param executor 等待异步占位符后构建 Component 使用的执行器，由引擎负责关闭
+     */
+    public PlaceholderEngineImpl(PlaceholderRegistry registry, @NotNull DataExecutor executor) {
         this.registry = Objects.requireNonNullElseGet(registry, PlaceholderRegistryImpl::new);
+        this.executor = executor;
     }
 
     @Override
     public CompletableFuture<Component> render(String template, OfflinePlayer context) {
         String string = this.processPlaceholder(template, context);
 
-        Matcher matcher = PATTERN.matcher(string);
-        Map<String, CompletableFuture<String>> futures = new HashMap<>();
-        while (matcher.find()) {
-            String key = matcher.group(1);
-            if (futures.containsKey(key)) continue;
-            registry.find(key, context).ifPresent(resolver -> futures.put(key, resolver.resolve(context)));
-        }
-
-        if (futures.isEmpty()) {
-            return CompletableFuture.supplyAsync(() -> this.build(string, null), this.executor);
-        }
-
-        CompletableFuture<?>[] all = futures.values().toArray(new CompletableFuture[0]);
-        return CompletableFuture.allOf(all).thenApplyAsync(v -> {
-            Map<String, Component> resolved = new HashMap<>(futures.size());
-            futures.forEach((k, f) -> {
-                String join = f.join();
-                resolved.put(k, this.build(join == null ? "":join, null));
-            });
-            return this.build(string, resolved);
-        }, this.executor);
+        Set<String> keys = new HashSet<>();
+        PlaceholderLines.collectKeys(string, keys);
 
+        return this.whenResolved(this.resolveAll(keys, context), resolved -> this.build(template, string, resolved));
     }
 
     @Override
     public CompletableFuture<Component> renderList(List<String> list, OfflinePlayer context) {
+        ExpandedLines expanded = this.expandLines(list, context);
+        return this.whenResolved(this.resolveAll(expanded.keys(), context), resolved -> {
+            List<Component> components = expanded.build(this, resolved);
+            return Component.join(JoinConfiguration.separator(Component.newline()), components);
+        });
+    }
 
-        List<String> lines = list.stream().map(line -> this.processPlaceholder(line, context)).toList();
-
-        Set<String> keys = new HashSet<>();
-
-        for (String line : lines) {
-            Matcher matcher = PATTERN.matcher(line);
-            while (matcher.find()) {
-                keys.add(matcher.group(1));
-            }
-        }
+    @Override
+    public CompletableFuture<List<Component>> renderAsComponentList(List<String> list, OfflinePlayer context) {
+        ExpandedLines expanded = this.expandLines(list, context);
+        return this.whenResolved(this.resolveAll(expanded.keys(), context), resolved -> expanded.build(this, resolved));
+    }
 
+    private Map<String, CompletableFuture<String>> resolveAll(Set<String> keys, OfflinePlayer context) {
         Map<String, CompletableFuture<String>> futures = new HashMap<>(keys.size());
         for (String key : keys) {
             registry.find(key, context).ifPresent(resolver -> futures.put(key, resolver.resolve(context)));
         }
+        return futures;
+    }
 
-        if (futures.isEmpty()) {
-            return CompletableFuture.supplyAsync(() -> {
-                List<Component> components = lines.stream().map(line -> this.build(line, Collections.emptyMap())).toList();
-                return Component.join(JoinConfiguration.separator(Component.newline()), components);
-            }, this.executor);
+    /**
+     * 所有占位符解析完成后构建结果
+     * 所有 resolver 都返回了已完成的 future 时（包括没有占位符）直接在调用线程构建，不再提交到执行器
+     * @param futures 占位符解析任务
+     * @param builder 使用解析结果构建 Component
+     * @return 构建结果
+     */
+    private <R> CompletableFuture<R> whenResolved(Map<String, CompletableFuture<String>> futures, Function<Map<String, Component>, R> builder) {
+        CompletableFuture<Void> ready = CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]));
+        if (ready.isDone()) {
+            try {
+                return CompletableFuture.completedFuture(builder.apply(this.collect(futures)));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
         }
+        return ready.thenCompose(v -> this.executor.supply(() -> builder.apply(this.collect(futures))));
+    }
 
-        CompletableFuture<?>[] all = futures.values().toArray(new CompletableFuture[0]);
-        return CompletableFuture.allOf(all).thenApplyAsync(t -> {
-            Map<String, Component> resolved = new HashMap<>(futures.size());
+    private Map<String, Component> collect(Map<String, CompletableFuture<String>> futures) {
+        Map<String, Component> resolved = new HashMap<>(futures.size());
+        futures.forEach((k, f) -> {
+            String join = f.join();
+            // 占位符的值因玩家和时间而异，不进入模板缓存
+            resolved.put(k, this.compile(join, false).render(null));
+        });
+        return resolved;
+    }
 
-            futures.forEach((k, f) -> {
-                String join = f.join();
-                resolved.put(k, this.build(join == null ? "":join, null));
-            });
-            List<Component> components = lines.stream().map(line -> this.build(line, resolved)).toList();
-            return Component.join(JoinConfiguration.separator(Component.newline()), components);
-        }, this.executor);
+    /**
+     * 获取渲染执行器的运行指标，包括排队数、丢弃数与调用方执行数
+     * @return 指标快照
+     */
+    public DataExecutorStats getExecutorStats() {
+        return this.executor.stats();
     }
 
-    @Override
-    public CompletableFuture<List<Component>> renderAsComponentList(List<String> list, OfflinePlayer context) {
+    /**
+     * 对多行内容执行 PlaceholderAPI 替换，并收集其中的插件自定义占位符，批量规则见 PlaceholderLines#expand
+     * @param templates 原始内容
+     * @param context 上下文要求
+     * @return 替换后的各行与其中出现的占位符
+     */
+    private ExpandedLines expandLines(List<String> templates, OfflinePlayer context) {
+        Set<String> keys = new HashSet<>();
+        List<String> lines = PlaceholderLines.expand(templates, t ? line -> this.processPlaceholder(line, context) : null, keys);
+        return new ExpandedLines(new ArrayList<>(templates), lines, keys);
+    }
 
-        List<String> lines = list.stream().map(line -> this.processPlaceholder(line, context)).toList();
+    private record ExpandedLines(List<String> templates, List<String> lines, Set<String> keys) {
 
-        Set<String> keys = new HashSet<>();
-        for (String line : lines) {
-            Matcher matcher = PATTERN.matcher(line);
-            while (matcher.find()) {
-                keys.add(matcher.group(1));
+        List<Component> build(PlaceholderEngineImpl engine, Map<String, Component> resolved) {
+            List<Component> components = new ArrayList<>(this.lines.size());
+            for (int i = 0; i < this.lines.size(); i++) {
+                components.add(engine.build(this.templates.get(i), this.lines.get(i), resolved));
             }
+            return components;
         }
 
-        Map<String, CompletableFuture<String>> futures = new HashMap<>(keys.size());
-        for (String key : keys) {
-            registry.find(key, context).ifPresent(resolver -> futures.put(key, resolver.resolve(context)));
-        }
+    }
 
-        if (futures.isEmpty()) {
-            return CompletableFuture.supplyAsync(() -> lines.stream().map(line -> this.build(line, Collections.emptyMap())).toList(), this.executor);
-        }
+    @Override
+    public Component build(@Nullable String template, Map<String, Component> placeholders) {
+        return this.compile(template, true).render(placeholders);
+    }
 
-        CompletableFuture<?>[] all = futures.values().toArray(new CompletableFuture[0]);
-        return CompletableFuture.allOf(all).thenApplyAsync(t -> {
+    /**
+     * 构建经过 PlaceholderAPI 处理的内容
+     * @param template 原始模板
+     * @param processed PlaceholderAPI 处理后的内容，与原始模板不同时不进入模板缓存
+     * @param placeholders 插件自定义占位符
+     * @return 生成的 Component
+     */
+    private Component build(@Nullable String template, @Nullable String processed, Map<String, Component> placeholders) {
+        return this.compile(processed, Objects.equals(template, processed)).render(placeholders);
+    }
 
-            Map<String, Component> resolved = new HashMap<>(futures.size());
-            futures.forEach((k, f) -> {
-                String join = f.join();
-                resolved.put(k, this.build(join == null ? "":join, null));
-            });
-            return lines.stream().map(line -> this.build(line, resolved)).toList();
+    /**
+     * 获取解析后的模板
+     * 只缓存配置中的原始模板：PlaceholderAPI 替换后的内容因玩家和时间而异，缓存命中率低且会挤出真正的模板；纯文本解析代价很低，也不缓存
+     * @param text 模板内容，为 null 时视为空字符串
+     * @param cacheable 是否允许进入缓存
+     * @return 解析后的模板
+     */
+    private CompiledTemplate compile(@Nullable String text, boolean cacheable) {
+        String key = text == null ? "" : text;
+        if (!cacheable || CompiledTemplate.isPlainText(key)) return CompiledTemplate.compile(key);
+        return this.templates.get(key, CompiledTemplate::compile);
+    }
 
-        }, this.executor);
+    /**
+     * 配置文件重载后模板内容可能已变化，清空解析缓存与占位符缓存
+     */
+    @EventHandler
+    public void onConfigReload(WhenPluginConfigReloadCompleteEvent event) {
+        this.templates.invalidateAll();
+        this.registry.invalidateAll();
+    }
 
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        this.registry.invalidate(event.getPlayer().getUniqueId());
     }
 
     @Override
     public Component directRender(String template) {
-        return this.build(this.processPlaceholder(template, null), null);
+        return this.build(template, this.processPlaceholder(template, null), null);
     }
 
     @Override
     public Component directRender(String template, OfflinePlayer context) {
-        return this.build(this.processPlaceholder(template, context), null);
+        return this.build(template, this.processPlaceholder(template, context), null);
     }
 
     @Override
     public Component directRender(String template, Map<String, Component> map) {
-        return this.build(this.processPlaceholder(template, null), map);
+        return this.build(template, this.processPlaceholder(template, null), map);
     }
 
     @Override
     public Component directRender(String template, OfflinePlayer context, Map<String, Component> map) {
-        return this.build(this.processPlaceholder(template, context), map);
+        return this.build(template, this.processPlaceholder(template, context), map);
     }
 
     @Override
     public Component directRenderList(List<String> templates, OfflinePlayer context) {
         List<Component> list = new ArrayList<>();
         for (String template : templates) {
-            list.add(this.build(this.processPlaceholder(template, context), null));
+            list.add(this.build(template, this.processPlaceholder(template, context), null));
         }
         return Component.join(JoinConfiguration.separator(Component.newline()), list);
     }
@@ -161,14 +215,15 @@ public class PlaceholderEngineImpl implements PlaceholderEngine {
     public List<Component> directRenderAsComponentList(List<String> list, OfflinePlayer context) {
         List<Component> componentList = new ArrayList<>();
         for (String s : list) {
-            componentList.add(this.build(this.processPlaceholder(s, context), null));
+            componentList.add(this.build(s, this.processPlaceholder(s, context), null));
         }
         return componentList;
     }
 
     @Override
     public void shutdown() {
-        this.executor.shutdown();
+        this.executor.shutdown(5, TimeUnit.SECONDS);
+        this.templates.invalidateAll();
     }
 
 }
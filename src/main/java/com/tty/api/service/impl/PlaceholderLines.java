@@ -0,0 +1,140 @@
+package com.tty.api.service.impl;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * PlaceholderAPI 批量处理多行内容时使用的行扫描
+ * 不依赖 Bukkit 与 PlaceholderAPI，可以在服务器之外单独测试
+ */
+final class PlaceholderLines {
+
+    // 批量交给 PlaceholderAPI 处理时的行分隔符，不包含 % 也不会出现在配置文本中
+    static final char LINE_SENTINEL = '\0';
+
+    private PlaceholderLines() {
+    }
+
+    /**
+     * 对多行内容执行 PlaceholderAPI 替换，并在拆分的同时收集其中的插件自定义占位符
+     * 包含 % 的行用分隔符拼接后只调用一次 PlaceholderAPI，再按分隔符拆回各行；拆分后行数不一致时逐行重新处理。
+     * 行尾存在未闭合的 % 时，PlaceholderAPI 会跨行匹配，这样的行单独处理
+     * @param templates 原始内容
+     * @param processor PlaceholderAPI 替换，为 null 时各行保持不变
+     * @param keys 收集到的占位符名称
+     * @return 替换后的各行
+     */
+    static List<String> expand(List<String> templates, @Nullable UnaryOperator<String> processor, Set<String> keys) {
+        List<String> lines = new ArrayList<>(templates);
+        List<Integer> batch = new ArrayList<>();
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (processor == null || line == null || line.indexOf('%') < 0) {
+                collectKeys(line, keys);
+                continue;
+            }
+            if (line.indexOf(LINE_SENTINEL) >= 0 || !endsOutsidePlaceholder(line)) {
+                String processed = processor.apply(line);
+                lines.set(i, processed);
+                collectKeys(processed, keys);
+                continue;
+            }
+            if (!batch.isEmpty()) joined.append(LINE_SENTINEL);
+            joined.append(line);
+            batch.add(i);
+        }
+        if (batch.isEmpty()) return lines;
+
+        // 分隔符不会出现在占位符名称中，拼接后的结果只需扫描一次
+        String processed = processor.apply(joined.toString());
+        if (split(processed, lines, batch)) {
+            collectKeys(processed, keys);
+            return lines;
+        }
+        for (int index : batch) {
+            String line = processor.apply(lines.get(index));
+            lines.set(index, line);
+            collectKeys(line, keys);
+        }
+        return lines;
+    }
+
+    /**
+     * 按分隔符把批量处理的结果拆回各行
+     * @return 拆分后的行数与批量处理的行数一致时写入并返回 true，否则不修改任何行
+     */
+    private static boolean split(@Nullable String processed, List<String> lines, List<Integer> batch) {
+        if (processed == null) return false;
+        int parts = 1;
+        for (int i = processed.indexOf(LINE_SENTINEL); i >= 0; i = processed.indexOf(LINE_SENTINEL, i + 1)) {
+            parts++;
+        }
+        if (parts != batch.size()) return false;
+        int from = 0;
+        for (int index : batch) {
+            int end = processed.indexOf(LINE_SENTINEL, from);
+            if (end < 0) end = processed.length();
+            lines.set(index, processed.substring(from, end));
+            from = end + 1;
+        }
+        return true;
+    }
+
+    /**
+     * 收集内容中形如 &lt;name&gt; 的插件自定义占位符，name 由小写字母、数字与 _ 组成
+     * @param text 内容，为 null 时忽略
+     * @param keys 收集到的占位符名称
+     */
+    static void collectKeys(@Nullable String text, Set<String> keys) {
+        if (text == null) return;
+        int length = text.length();
+        int start = text.indexOf('<');
+        while (start >= 0) {
+            int end = start + 1;
+            while (end < length && isKeyChar(text.charAt(end))) end++;
+            if (end > start + 1 && end < length && text.charAt(end) == '>') {
+                keys.add(text.substring(start + 1, end));
+                start = text.indexOf('<', end + 1);
+            } else {
+                start = text.indexOf('<', end);
+            }
+        }
+    }
+
+    private static boolean isKeyChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    /**
+     * 按 PlaceholderAPI 的解析规则判断行尾是否处于占位符之外：
+     * % 之后在出现 _ 之前遇到空格，或遇到下一个 % 时占位符结束；一直到行尾都没有结束，或行尾是单独的 % 时返回 false
+     * @param line 行内容
+     * @return 拼接后下一行的内容是否不会被当作本行占位符的一部分
+     */
+    static boolean endsOutsidePlaceholder(String line) {
+        int length = line.length();
+        for (int i = 0; i < length; i++) {
+            if (line.charAt(i) != '%') continue;
+            // 行尾单独的 % 在本行中是普通字符，拼接后会与下一行开头组成占位符
+            if (i + 1 >= length) return false;
+            boolean identified = false;
+            boolean closed = false;
+            while (++i < length) {
+                char c = line.charAt(i);
+                if (c == '%' || (c == ' ' && !identified)) {
+                    closed = true;
+                    break;
+                }
+                if (c == '_') identified = true;
+            }
+            if (!closed) return false;
+        }
+        return true;
+    }
+
+}
@@ -1,26 +1,88 @@
 package com.tty.api.service.impl;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import com.tty.api.enumType.PlaceholderTypeEnum;
 import com.tty.api.service.placeholder.PlaceholderResolve;
 import com.tty.api.service.placeholder.PlaceholderDefinition;
 import com.tty.api.service.placeholder.PlaceholderRegistry;
 import org.bukkit.OfflinePlayer;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class PlaceholderRegistryImpl implements PlaceholderRegistry {
 
     private final Map<String, PlaceholderResolve> placeholders = new HashMap<>();
 
+    // 各占位符的缓存时间
+    private final Map<String, Duration> cacheTtls = new ConcurrentHashMap<>();
+
+    // 各玩家已缓存的占位符，玩家退出时只需失效这些条目
+    private final Map<UUID, Set<String>> playerKeys = new ConcurrentHashMap<>();
+
+    // 占位符解析结果缓存，同一个键的并发解析共享同一个任务
+    private final AsyncCache<CacheKey, String> cache = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfter(Expiry.<CacheKey, String>creating((key, value) -> this.cacheTtls.getOrDefault(key.key(), Duration.ZERO)))
+            .removalListener((CacheKey key, String value, RemovalCause cause) -> this.unindex(key))
+            .buildAsync();
+
     @Override
     public void register(PlaceholderDefinition<? extends PlaceholderTypeEnum> definition) {
         String key = definition.key().getType();
         if (this.placeholders.containsKey(key)) {
             throw new IllegalStateException("Duplicate placeholder: " + key);
         }
-        this.placeholders.put(key, definition.resolver());
+        PlaceholderResolve resolver = definition.resolver();
+        Duration ttl = definition.cacheTtl();
+        if (ttl != null && ttl.isPositive()) {
+            this.cacheTtls.put(key, ttl);
+            resolver = this.cached(key, resolver, definition.playerScoped());
+        }
+        this.placeholders.put(key, resolver);
+    }
+
+    private PlaceholderResolve cached(String key, PlaceholderResolve resolver, boolean playerScoped) {
+        return context -> {
+            UUID playerId = playerScoped && context != null ? context.getUniqueId() : null;
+            CompletableFuture<String> future = this.cache.get(new CacheKey(key, playerId), (k, executor) -> resolver.resolve(context));
+            if (playerId != null) {
+                this.index(playerId, key);
+            }
+            return future;
+        };
+    }
+
+    /**
+     * 记录玩家已缓存的占位符
+     * 在条目写入缓存之后执行，与 unindex 在同一个玩家上串行，被移除的旧条目不会删掉新条目的记录
+     */
+    private void index(UUID playerId, String key) {
+        this.playerKeys.compute(playerId, (id, keys) -> {
+            if (keys == null) keys = ConcurrentHashMap.newKeySet();
+            keys.add(key);
+            return keys;
+        });
+    }
+
+    /**
+     * 缓存条目被移除后，如果缓存中已没有该条目，删除对应的记录
+     */
+    private void unindex(CacheKey key) {
+        if (key == null || key.playerId() == null) return;
+        this.playerKeys.computeIfPresent(key.playerId(), (id, keys) -> {
+            if (!this.cache.asMap().containsKey(key)) keys.remove(key.key());
+            return keys.isEmpty() ? null : keys;
+        });
     }
 
     @Override
@@ -28,4 +90,26 @@ public class PlaceholderRegistryImpl implements PlaceholderRegistry {
         return Optional.ofNullable(this.placeholders.get(key));
     }
 
+    @Override
+    public void invalidate(UUID playerId) {
+        Set<String> keys = this.playerKeys.remove(playerId);
+        if (keys == null) return;
+        for (String key : keys) {
+            this.cache.synchronous().invalidate(new CacheKey(key, playerId));
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        this.cache.synchronous().invalidateAll();
+        this.playerKeys.clear();
+    }
+
+    /**
+     * @param key 占位符
+     * @param playerId 玩家 UUID，全局占位符为 null
+     */
+    private record CacheKey(String key, UUID playerId) {
+    }
+
 }
@@ -0,0 +1,152 @@
+package com.tty.api.service.placeholder;
+
+import com.tty.api.utils.ColorConverterLegacy;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.TextReplacementConfig;
+import net.kyori.adventure.text.event.HoverEvent;
+import net.kyori.adventure.text.format.TextDecoration;
+import net.kyori.adventure.text.minimessage.Context;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.minimessage.tag.Tag;
+import net.kyori.adventure.text.minimessage.tag.resolver.ArgumentQueue;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 预先解析的模板
+ * 模板只进行一次旧版颜色代码转换与 MiniMessage 解析，解析结果不可变，可以被多次渲染共享。
+ * 解析时模板中的 &lt;key&gt; 占位符被标记为插槽，渲染时一次遍历组件树填入所有占位符的值，
+ * 没有提供值的插槽保留为原样的 &lt;key&gt; 文本
+ */
+public final class CompiledTemplate {
+
+    private static final Pattern SLOT_NAME = Pattern.compile("[a-z0-9_]+");
+
+    // 插槽组件的 insertion 前缀，用于在组件树中识别插槽
+    private static final String SLOT_INSERTION = "arilib:slot:";
+
+    // 在 MiniMessage 标准标签之后处理，无参数的未知标签都解析为插槽
+    private static final TagResolver SLOT_RESOLVER = new TagResolver() {
+
+        @Override
+        public @Nullable Tag resolve(@NotNull String name, @NotNull ArgumentQueue arguments, @NotNull Context ctx) {
+            if (arguments.hasNext() || !this.has(name)) return null;
+            return Tag.selfClosingInserting(Component.text("<" + name + ">").insertion(SLOT_INSERTION + name));
+        }
+
+        @Override
+        public boolean has(@NotNull String name) {
+            return SLOT_NAME.matcher(name).matches();
+        }
+
+    };
+
+    // 转换颜色代码后的模板内容
+    private final String source;
+
+    // 带插槽标记的组件树
+    private final Component component;
+
+    // 所有插槽都未填入时的结果
+    private final Component plain;
+
+    private CompiledTemplate(String source, Component component) {
+        this.source = source;
+        this.component = component;
+        this.plain = resetItalic(fill(component, Map.of()));
+    }
+
+    /**
+     * 解析模板
+     * @param template 模板内容，为 null 时视为空字符串
+     * @return 解析后的模板
+     */
+    public static CompiledTemplate compile(@Nullable String template) {
+        String text = template == null ? "" : template;
+        // 纯文本不需要颜色代码转换与 MiniMessage 解析
+        if (isPlainText(text)) return new CompiledTemplate(text, Component.text(text));
+        String converted = ColorConverterLegacy.convert(text);
+        return new CompiledTemplate(converted, MiniMessage.miniMessage().deserialize(converted, SLOT_RESOLVER));
+    }
+
+    /**
+     * 判断内容是否为不含标签、转义符与颜色代码的纯文本
+     * @param text 内容
+     * @return 是否为纯文本
+     */
+    public static boolean isPlainText(@NotNull String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '<' || c == '&' || c == '§' || c == '\\') return false;
+        }
+        return true;
+    }
+
+    /**
+     * 填入占位符并生成 Component，结果默认取消斜体
+     * @param placeholders 占位符，可以为 null
+     * @return 生成的 Component
+     */
+    public Component render(@Nullable Map<String, Component> placeholders) {
+        if (placeholders == null || placeholders.isEmpty()) return this.plain;
+        Component result = fill(this.component, placeholders);
+        // 不符合插槽命名的占位符无法在解析时标记，仍按字面量替换
+        for (Map.Entry<String, Component> entry : placeholders.entrySet()) {
+            if (SLOT_NAME.matcher(entry.getKey()).matches()) continue;
+            String literal = "<" + entry.getKey() + ">";
+            if (!this.source.contains(literal)) continue;
+            result = result.replaceText(TextReplacementConfig.builder().matchLiteral(literal).replacement(entry.getValue()).build());
+        }
+        return resetItalic(result);
+    }
+
+    /**
+     * 遍历组件树（包括悬浮文本），将插槽替换为对应的值，没有变化的子树直接复用
+     * @param component 组件
+     * @param values 占位符的值
+     * @return 替换后的组件
+     */
+    private static Component fill(Component component, Map<String, Component> values) {
+        String insertion = component.insertion();
+        if (insertion != null && insertion.startsWith(SLOT_INSERTION) && component instanceof TextComponent) {
+            String name = insertion.substring(SLOT_INSERTION.length());
+            Component value = values.get(name);
+            return value != null ? value : Component.text("<" + name + ">");
+        }
+        List<Component> children = component.children();
+        List<Component> filled = null;
+        for (int i = 0; i < children.size(); i++) {
+            Component child = children.get(i);
+            Component replaced = fill(child, values);
+            if (replaced != child) {
+                if (filled == null) filled = new ArrayList<>(children);
+                filled.set(i, replaced);
+            }
+        }
+        Component result = filled == null ? component : component.children(filled);
+        HoverEvent<?> hover = result.hoverEvent();
+        if (hover != null && hover.action() == HoverEvent.Action.SHOW_TEXT) {
+            Component text = (Component) hover.value();
+            Component replaced = fill(text, values);
+            if (replaced != text) {
+                result = result.hoverEvent(HoverEvent.showText(replaced));
+            }
+        }
+        return result;
+    }
+
+    private static Component resetItalic(Component result) {
+        if (result instanceof TextComponent tc) {
+            return tc.decoration(TextDecoration.ITALIC, false);
+        }
+        return Component.empty().append(result.decoration(TextDecoration.ITALIC, false));
+    }
+
+}
@@ -1,13 +1,44 @@
 package com.tty.api.service.placeholder;
 
 import com.tty.api.enumType.PlaceholderTypeEnum;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
 
 public interface PlaceholderDefinition<E> {
 
     E key();
     PlaceholderResolve resolver();
 
+    /**
+     * 解析结果的缓存时间，有效期内的渲染直接使用缓存的值，同一时间的多次解析只会调用一次 resolver
+     * @return 缓存时间，默认 null 表示每次渲染都重新解析
+     */
+    default @Nullable Duration cacheTtl() {
+        return null;
+    }
+
+    /**
+     * 解析结果是否与玩家相关，为 false 时所有玩家共享同一个缓存值
+     * @return 默认 true
+     */
+    default boolean playerScoped() {
+        return true;
+    }
+
     static <E extends Enum<E> & PlaceholderTypeEnum> PlaceholderDefinition<E> of(E key, PlaceholderResolve resolver) {
+        return of(key, resolver, null, true);
+    }
+
+    /**
+     * 创建带缓存的占位符定义
+     * @param key 占位符
+     * @param resolver 解析方式
+     * @param cacheTtl 缓存时间，null 表示不缓存
+     * @param playerScoped 解析结果是否与玩家相关
+     * @return 占位符定义
+     */
+    static <E extends Enum<E> & PlaceholderTypeEnum> PlaceholderDefinition<E> of(E key, PlaceholderResolve resolver, @Nullable Duration cacheTtl, boolean playerScoped) {
         return new PlaceholderDefinition<>() {
             @Override
             public E key() {
@@ -18,8 +49,17 @@ public interface PlaceholderDefinition<E> {
             public PlaceholderResolve resolver() {
                 return resolver;
             }
+
+            @Override
+            public Duration cacheTtl() {
+                return cacheTtl;
+            }
+
+            @Override
+            public boolean playerScoped() {
+                return playerScoped;
+            }
         };
     }
 
 }
-
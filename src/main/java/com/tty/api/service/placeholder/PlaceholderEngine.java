@@ -1,14 +1,9 @@
 package com.tty.api.service.placeholder;
 
-import com.tty.api.utils.ColorConverterLegacy;
 import me.clip.placeholderapi.PlaceholderAPI;
 import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.TextComponent;
-import net.kyori.adventure.text.TextReplacementConfig;
 import net.kyori.adventure.text.event.ClickEvent;
 import net.kyori.adventure.text.event.HoverEvent;
-import net.kyori.adventure.text.format.TextDecoration;
-import net.kyori.adventure.text.minimessage.MiniMessage;
 import net.kyori.adventure.title.Title;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
@@ -153,21 +148,12 @@ public interface PlaceholderEngine {
     }
 
     default Component build(@Nullable String template, Map<String, Component> placeholders) {
-        if (template == null) template = "";
-        Component result = MiniMessage.miniMessage().deserialize(ColorConverterLegacy.convert(template));
-        if (placeholders != null) {
-            for (Map.Entry<String, Component> entry : placeholders.entrySet()) {
-                result = result.replaceText(TextReplacementConfig.builder().matchLiteral("<" + entry.getKey() + ">").replacement(entry.getValue()).build());
-            }
-        }
-        if (result instanceof TextComponent tc) {
-            return tc.decoration(TextDecoration.ITALIC, false);
-        }
-        return Component.empty().append(result.decoration(TextDecoration.ITALIC, false));
+        return CompiledTemplate.compile(template).render(placeholders);
     }
 
     default String processPlaceholder(@Nullable String content, OfflinePlayer offlinePlayer) {
-        if (content == null || content.isEmpty()) return content;
+        // 不包含 % 的内容不可能有 PlaceholderAPI 占位符
+        if (content == null || content.indexOf('%') < 0) return content;
         return t ? PlaceholderAPI.setPlaceholders(offlinePlayer, content):content;
     }
 
@@ -4,11 +4,24 @@ import com.tty.api.enumType.PlaceholderTypeEnum;
 import org.bukkit.OfflinePlayer;
 
 import java.util.Optional;
+import java.util.UUID;
 
 public interface PlaceholderRegistry {
 
     void register(PlaceholderDefinition<? extends PlaceholderTypeEnum> definition);
     Optional<PlaceholderResolve> find(String key, OfflinePlayer context);
 
-}
+    /**
+     * 移除指定玩家的占位符缓存，玩家退出时调用
+     * @param playerId 玩家 UUID
+     */
+    default void invalidate(UUID playerId) {
+    }
+
+    /**
+     * 移除所有占位符缓存
+     */
+    default void invalidateAll() {
+    }
 
+}
@@ -62,4 +62,13 @@ public interface PlaceholderResolve {
         return context -> CompletableFuture.completedFuture(function.apply(context));
     }
 
+    /**
+     * 会阻塞的解析方式（例如直接查询数据库或调用同步接口），每次解析在新的虚拟线程中执行，不占用渲染执行器
+     * @param function 解析方式
+     * @return 解析器
+     */
+    static PlaceholderResolve ofBlocking(Function<OfflinePlayer, String> function) {
+        return context -> CompletableFuture.supplyAsync(() -> function.apply(context), task -> Thread.ofVirtual().name("tty-placeholder-blocking").start(task));
+    }
+
 }
@@ -1,40 +1,80 @@
 package com.tty.api.utils;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tty.api.Log;
+import com.tty.api.dto.CursorPage;
+import com.tty.api.dto.PageCursor;
 import com.tty.api.dto.PageResult;
+import com.tty.api.enumType.SyncGuardMode;
 import lombok.Getter;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
+import org.bukkit.Bukkit;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.concurrent.*;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
 public abstract class BaseDataManager<T> {
 
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    // 记录的 tick 线程调用位置上限，超过后不再输出新的调用栈
+    private static final int MAX_SYNC_CALL_SITES = 256;
+
     @Getter
     private volatile boolean isAsync;
 
-    private final ExecutorService executor;
+    private final DataExecutor executor;
+
+    // 执行器是否由当前管理器创建，共享的执行器由创建者负责关闭
+    private final boolean ownsExecutor;
 
     private final Supplier<SqlSessionFactory> factorySupplier;
 
+    // 数据库任务耗时，从打开会话开始计算，不包含排队时间
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    // 同步模式下 tick 线程访问数据库的处理方式与单次耗时预算，预算为 0 表示不检测耗时
+    private volatile SyncGuardMode syncGuardMode = SyncGuardMode.OFF;
+    private volatile long syncBudgetMillis = 0L;
+    private volatile Log log;
+
+    // 已输出过调用栈的 tick 线程调用位置
+    private final Set<String> reportedCallSites = ConcurrentHashMap.newKeySet();
+
     public BaseDataManager(@NotNull Supplier<SqlSessionFactory> factorySupplier, boolean isAsync) {
+        this(factorySupplier, isAsync, DataExecutor.bounded("tty-db-thread"), true);
+    }
+
+    /**
+     * 使用共享的执行器，关闭管理器时不会关闭该执行器
+     * @param factorySupplier SqlSessionFactory 提供者
+     * @param isAsync 是否异步执行
+     * @param executor 共享的执行器，例如 AbstractJavaPlugin#getDataExecutor
+     */
+    public BaseDataManager(@NotNull Supplier<SqlSessionFactory> factorySupplier, boolean isAsync, @NotNull DataExecutor executor) {
+        this(factorySupplier, isAsync, executor, false);
+    }
+
+    private BaseDataManager(Supplier<SqlSessionFactory> factorySupplier, boolean isAsync, DataExecutor executor, boolean ownsExecutor) {
         this.factorySupplier = factorySupplier;
         this.isAsync = isAsync;
-        this.executor = new ThreadPoolExecutor(
-                2,
-                8,
-                60L,
-                TimeUnit.SECONDS,
-                new LinkedBlockingQueue<>(100),
-                r -> {
-                    Thread thread = new Thread(r, "tty-db-thread");
-                    thread.setDaemon(true);
-                    return thread;
-                }
-        );
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
     }
 
     /**
@@ -45,51 +85,258 @@ public abstract class BaseDataManager<T> {
         this.isAsync = async;
     }
 
+    /**
+     * 设置同步模式下的线程检测
+     * 同步模式的调用如果发生在服务器 tick 线程（Folia 下为任意区域线程，Bukkit#isPrimaryThread 均返回 true），
+     * WARN 模式对每个调用位置只输出一次调用栈，之后同一位置只在超过预算耗时时输出一行警告；
+     * OFFLOAD 模式自动转交给执行器异步执行，此时返回的 future 不再是立即完成的。
+     * 另外任意线程上的同步调用超过预算耗时都会输出警告
+     * @param mode 处理方式
+     * @param budgetMillis 单次同步调用的耗时预算（毫秒），0 表示不检测
+     * @param log 输出警告使用的日志
+     */
+    public void setSyncGuard(@NotNull SyncGuardMode mode, long budgetMillis, @NotNull Log log) {
+        this.syncGuardMode = mode;
+        this.syncBudgetMillis = Math.max(0L, budgetMillis);
+        this.log = log;
+    }
+
     protected <R> CompletableFuture<R> executeTask(Function<SqlSession, R> task) {
-        SqlSession session = this.factorySupplier.get().openSession(true);
-        if (!this.isAsync) {
-            try {
-                R result = task.apply(session);
-                return CompletableFuture.completedFuture(result);
-            } catch (Exception e) {
-                return CompletableFuture.failedFuture(e);
-            } finally {
-                session.close();
+        // 会话在任务内部打开，任务被拒绝时不会产生未关闭的会话
+        return this.dispatch(() -> this.runTask(task));
+    }
+
+    private <R> CompletableFuture<R> dispatch(Supplier<R> work) {
+        if (this.isAsync) {
+            return this.executor.supply(work);
+        }
+        SyncGuardMode mode = this.syncGuardMode;
+        boolean onTickThread = mode != SyncGuardMode.OFF && Bukkit.isPrimaryThread();
+        if (onTickThread && mode == SyncGuardMode.OFFLOAD) {
+            return this.executor.supply(work);
+        }
+        long start = System.nanoTime();
+        try {
+            return CompletableFuture.completedFuture(work.get());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            this.checkSyncCall(onTickThread, System.nanoTime() - start);
+        }
+    }
+
+    private void checkSyncCall(boolean onTickThread, long nanos) {
+        Log log = this.log;
+        if (log == null) return;
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        long budget = this.syncBudgetMillis;
+        boolean overBudget = budget > 0 && millis > budget;
+        if (onTickThread) {
+            String callSite = this.callSite();
+            if (this.reportedCallSites.size() < MAX_SYNC_CALL_SITES && this.reportedCallSites.add(callSite)) {
+                log.warn(new Throwable("database call on tick thread"), "{} ran a sync database call on tick thread {} ({} ms) at {}, further calls from this site are reported only when over budget",
+                        this.getClass().getSimpleName(), Thread.currentThread().getName(), millis, callSite);
+                return;
             }
-        } else {
-            return CompletableFuture.supplyAsync(() -> task.apply(session), this.executor)
-                    .whenComplete((result, ex) -> session.close());
+            if (overBudget) {
+                log.warn("{} sync database call on tick thread {} took {} ms, budget {} ms, at {}",
+                        this.getClass().getSimpleName(), Thread.currentThread().getName(), millis, budget, callSite);
+            }
+        } else if (overBudget) {
+            log.warn("{} sync database call took {} ms, budget {} ms, thread {}",
+                    this.getClass().getSimpleName(), millis, budget, Thread.currentThread().getName());
+        }
+    }
+
+    /**
+     * 查找调用数据管理器的位置，即调用栈中第一个不属于数据管理器的栈帧
+     * @return 类名#方法名:行号
+     */
+    private String callSite() {
+        return STACK_WALKER.walk(frames -> frames
+                .filter(frame -> !BaseDataManager.class.isAssignableFrom(frame.getDeclaringClass()))
+                .findFirst()
+                .map(frame -> frame.getClassName() + "#" + frame.getMethodName() + ":" + frame.getLineNumber())
+                .orElse("unknown"));
+    }
+
+    private <R> R runTask(Function<SqlSession, R> task) {
+        long start = System.nanoTime();
+        try (SqlSession session = this.factorySupplier.get().openSession(true)) {
+            return task.apply(session);
+        } finally {
+            this.latency.record(System.nanoTime() - start);
         }
     }
 
     protected <R> CompletableFuture<R> executeTransaction(Function<SqlSession, R> task) {
-        if (!this.isAsync) {
-            SqlSession session = this.factorySupplier.get().openSession(false);
+        return this.dispatch(() -> this.runTransaction(task, ExecutorType.SIMPLE));
+    }
+
+    /**
+     * 使用 JDBC 批处理执行器运行任务，所有语句在同一个事务中提交
+     * @param task 任务内容
+     * @return 任务结果
+     */
+    protected <R> CompletableFuture<R> executeBatch(Function<SqlSession, R> task) {
+        return this.dispatch(() -> this.runTransaction(task, ExecutorType.BATCH));
+    }
+
+    private <R> R runTransaction(Function<SqlSession, R> task, ExecutorType executorType) {
+        long start = System.nanoTime();
+        try (SqlSession session = this.factorySupplier.get().openSession(executorType, false)) {
             try {
                 R result = task.apply(session);
                 session.commit();
-                return CompletableFuture.completedFuture(result);
+                return result;
             } catch (Exception e) {
                 session.rollback();
-                return CompletableFuture.failedFuture(e);
-            } finally {
-                session.close();
+                throw e;
+            }
+        } finally {
+            this.latency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 获取执行器的运行指标，包括排队等待时间与拒绝数
+     * @return 指标快照
+     */
+    public DataExecutorStats getExecutorStats() {
+        return this.executor.stats();
+    }
+
+    /**
+     * 获取数据库任务耗时统计
+     * @return 耗时快照
+     */
+    public LatencyHistogram.Snapshot getLatencySnapshot() {
+        return this.latency.snapshot();
+    }
+
+    /**
+     * 实体对应的 Mapper 类型，批量写入等需要直接访问 Mapper 的功能依赖此方法
+     * @return Mapper 类型，默认不提供
+     */
+    public @Nullable Class<? extends BaseMapper<T>> getMapperClass() {
+        return null;
+    }
+
+    /**
+     * 按主键批量更新实体，所有 update 语句通过 JDBC 批处理一次提交
+     * @param entities 需要更新的实体
+     * @return 受影响的行数
+     */
+    public CompletableFuture<Integer> updateBatchById(Collection<T> entities) {
+        Class<? extends BaseMapper<T>> mapperClass = this.getMapperClass();
+        if (mapperClass == null) {
+            return CompletableFuture.failedFuture(new UnsupportedOperationException(this.getClass().getSimpleName() + " does not provide a mapper class"));
+        }
+        if (entities.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+        return this.executeBatch(session -> {
+            BaseMapper<T> mapper = session.getMapper(mapperClass);
+            for (T entity : entities) {
+                mapper.updateById(entity);
+            }
+            return countBatchResults(session.flushStatements());
+        });
+    }
+
+    /**
+     * 按主键批量查询实体，通过一条 IN 查询返回所有存在的实体
+     * 默认通过 getMapperClass 提供的 Mapper 调用 selectByIds，未提供 Mapper 时返回 UnsupportedOperationException，
+     * 调用方应退回到其它查询方式
+     * @param ids 主键集合
+     * @return 查询到的实体，不存在的主键不会出现在结果中
+     */
+    public CompletableFuture<List<T>> getByIds(Collection<?> ids) {
+        Class<? extends BaseMapper<T>> mapperClass = this.getMapperClass();
+        if (mapperClass == null) {
+            return CompletableFuture.failedFuture(new UnsupportedOperationException(this.getClass().getSimpleName() + " does not provide a mapper class"));
+        }
+        if (ids.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        return this.executeTask(session -> session.getMapper(mapperClass).selectByIds(ids));
+    }
+
+    /**
+     * 键集分页查询，从游标位置向后读取一页，不使用 OFFSET
+     * 游标条件与 ORDER BY / LIMIT 片段追加在查询条件的副本上，传入的查询条件不会被修改，但不能包含自己的排序和 last 片段。
+     * 游标条件以 AND (...) 追加，查询条件中顶层的 or 需要自行用 and(w -> ...) 嵌套
+     * @param cursor 游标，第一页使用 PageCursor#first
+     * @param size 每页数量
+     * @param key 查询条件
+     * @param count 是否额外执行 COUNT 查询统计总数
+     * @return 当前页数据与下一页游标
+     */
+    public CompletableFuture<CursorPage<T>> getListAfter(PageCursor<T> cursor, int size, LambdaQueryWrapper<T> key, boolean count) {
+        Class<? extends BaseMapper<T>> mapperClass = this.getMapperClass();
+        if (mapperClass == null) {
+            return CompletableFuture.failedFuture(new UnsupportedOperationException(this.getClass().getSimpleName() + " does not provide a mapper class"));
+        }
+        if (size <= 0) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("size must be positive"));
+        }
+        return this.executeTask(session -> {
+            BaseMapper<T> mapper = session.getMapper(mapperClass);
+            long total = count ? mapper.selectCount(key) : -1L;
+            LambdaQueryWrapper<T> query = key.clone();
+            String seek = cursor.seekCondition();
+            if (seek != null) {
+                query.and(w -> w.apply(seek, cursor.lastValue()));
             }
-        } else {
-            return CompletableFuture.supplyAsync(() -> {
-                SqlSession session = this.factorySupplier.get().openSession(false);
-                try {
-                    R result = task.apply(session);
-                    session.commit();
-                    return result;
-                } catch (Exception e) {
-                    session.rollback();
-                    throw e;
-                } finally {
-                    session.close();
+            query.last(cursor.orderAndLimit(size));
+            List<T> rows = mapper.selectList(query);
+            if (rows.size() <= size) {
+                return CursorPage.build(rows, null, total);
+            }
+            List<T> records = new ArrayList<>(rows.subList(0, size));
+            return CursorPage.build(records, cursor.after(records.getLast()), total);
+        });
+    }
+
+    /**
+     * 流式读取所有匹配的实体，通过 ResultHandler 逐行回调，不在内存中构建结果列表
+     * 使用 MySQL 时如需驱动也不缓冲整个结果集，需要在连接参数中开启 useCursorFetch 并设置 defaultFetchSize
+     * @param key 查询条件
+     * @param consumer 每行的处理逻辑，在数据库线程中执行
+     * @return 读取的行数，未提供 Mapper 时返回 UnsupportedOperationException
+     */
+    public CompletableFuture<Long> streamList(LambdaQueryWrapper<T> key, Consumer<T> consumer) {
+        Class<? extends BaseMapper<T>> mapperClass = this.getMapperClass();
+        if (mapperClass == null) {
+            return CompletableFuture.failedFuture(new UnsupportedOperationException(this.getClass().getSimpleName() + " does not provide a mapper class"));
+        }
+        return this.executeTask(session -> {
+            long[] count = {0L};
+            session.getMapper(mapperClass).selectList(key, context -> {
+                consumer.accept(context.getResultObject());
+                count[0]++;
+            });
+            return count[0];
+        });
+    }
+
+    /**
+     * 统计批处理结果中的受影响行数
+     * @param results 批处理结果
+     * @return 受影响的行数
+     */
+    protected static int countBatchResults(List<BatchResult> results) {
+        int count = 0;
+        for (BatchResult result : results) {
+            for (int updateCount : result.getUpdateCounts()) {
+                if (updateCount == Statement.SUCCESS_NO_INFO) {
+                    count++;
+                } else if (updateCount > 0) {
+                    count += updateCount;
                 }
-            }, this.executor);
+            }
         }
+        return count;
     }
 
     public abstract CompletableFuture<PageResult<T>> getList(int pageNum, int pageSize, LambdaQueryWrapper<T> key);
@@ -105,14 +352,8 @@ public abstract class BaseDataManager<T> {
     public abstract CompletableFuture<Boolean> update(T instance, LambdaQueryWrapper<T> key);
 
     public void shutdown() {
-        this.executor.shutdownNow();
-        try {
-            if (!this.executor.awaitTermination(5, TimeUnit.SECONDS)) {
-                this.executor.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            this.executor.shutdownNow();
-            Thread.currentThread().interrupt();
+        if (this.ownsExecutor) {
+            this.executor.shutdown(5, TimeUnit.SECONDS);
         }
     }
 
@@ -0,0 +1,345 @@
+package com.tty.api.utils;
+
+import com.tty.api.enumType.OverflowPolicy;
+import com.tty.api.enumType.TaskPriority;
+import org.bukkit.Bukkit;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 数据库任务执行器，也用于占位符渲染等其它需要限制并发的任务
+ * 提供有界平台线程池与虚拟线程（限制并发数，通常与连接池大小一致）两种模式，两种模式的排队容量都有限，队列满时按 OverflowPolicy 处理，
+ * 排队的任务按 TaskPriority 优先级取出，并统计提交数、拒绝数、排队等待时间等指标。同一个执行器可以被多个 BaseDataManager 共享
+ */
+public final class DataExecutor {
+
+    // 当前线程提交任务时使用的优先级，见 withPriority
+    private static final ThreadLocal<TaskPriority> PRIORITY = ThreadLocal.withInitial(() -> TaskPriority.NORMAL);
+
+    private final String name;
+
+    private final ThreadPoolExecutor delegate;
+
+    // 排队容量（队列容量 + 线程数或最大并发数）
+    private final Semaphore queueSlots;
+    private final long offerTimeoutMillis;
+    private final OverflowPolicy overflow;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private DataExecutor(String name, ThreadPoolExecutor delegate, Semaphore queueSlots, long offerTimeoutMillis, OverflowPolicy overflow) {
+        this.name = name;
+        this.delegate = delegate;
+        this.queueSlots = queueSlots;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.overflow = overflow;
+    }
+
+    /**
+     * 有界平台线程池
+     * 线程按需创建直至 maxSize，空闲 60 秒后回收；队列已满时提交线程最多阻塞 offerTimeoutMillis 毫秒等待空位，仍然没有空位时拒绝任务。
+     * 在服务器 tick 线程（Folia 下为区域线程）提交时不等待，队列已满立即拒绝
+     * @param name 线程名前缀
+     * @param maxSize 最大线程数
+     * @param queueCapacity 队列容量
+     * @param offerTimeoutMillis 队列满时的最长等待时间
+     * @return 执行器
+     */
+    public static DataExecutor bounded(@NotNull String name, int maxSize, int queueCapacity, long offerTimeoutMillis) {
+        return bounded(name, maxSize, queueCapacity, offerTimeoutMillis, OverflowPolicy.REJECT);
+    }
+
+    /**
+     * 有界平台线程池，队列已满时不等待，直接按 overflow 处理
+     * @param name 线程名前缀
+     * @param maxSize 最大线程数
+     * @param queueCapacity 队列容量
+     * @param overflow 队列满时的处理方式
+     * @return 执行器
+     */
+    public static DataExecutor bounded(@NotNull String name, int maxSize, int queueCapacity, @NotNull OverflowPolicy overflow) {
+        return bounded(name, maxSize, queueCapacity, 0L, overflow);
+    }
+
+    private static DataExecutor bounded(String name, int maxSize, int queueCapacity, long offerTimeoutMillis, OverflowPolicy overflow) {
+        AtomicInteger index = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread thread = new Thread(r, name + "-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new DataExecutor(name, priorityPool(maxSize, factory), new Semaphore(queueCapacity + maxSize), offerTimeoutMillis, overflow);
+    }
+
+    /**
+     * 默认的有界平台线程池，最多 8 个线程、队列容量 100，队列已满时立即拒绝，不会阻塞提交线程
+     * @param name 线程名前缀
+     * @return 执行器
+     */
+    public static DataExecutor bounded(@NotNull String name) {
+        return bounded(name, 8, 100, OverflowPolicy.REJECT);
+    }
+
+    /**
+     * 最多 maxConcurrency 个虚拟线程同时执行任务，其余任务按优先级排队，队列容量 100，队列已满时立即拒绝
+     * @param name 线程名前缀
+     * @param maxConcurrency 最大并发数，建议与数据库连接池大小一致
+     * @return 执行器
+     */
+    public static DataExecutor virtual(@NotNull String name, int maxConcurrency) {
+        return virtual(name, maxConcurrency, 100, OverflowPolicy.REJECT);
+    }
+
+    /**
+     * 最多 maxConcurrency 个虚拟线程同时执行任务，其余任务按优先级排队；
+     * 队列已满时的等待与拒绝规则与同参数的有界平台线程池相同
+     * @param name 线程名前缀
+     * @param maxConcurrency 最大并发数，建议与数据库连接池大小一致
+     * @param queueCapacity 队列容量
+     * @param offerTimeoutMillis 队列满时的最长等待时间
+     * @return 执行器
+     */
+    public static DataExecutor virtual(@NotNull String name, int maxConcurrency, int queueCapacity, long offerTimeoutMillis) {
+        return virtual(name, maxConcurrency, queueCapacity, offerTimeoutMillis, OverflowPolicy.REJECT);
+    }
+
+    /**
+     * 最多 maxConcurrency 个虚拟线程同时执行任务，其余任务按优先级排队，队列已满时不等待，直接按 overflow 处理
+     * @param name 线程名前缀
+     * @param maxConcurrency 最大并发数，建议与数据库连接池大小一致
+     * @param queueCapacity 队列容量
+     * @param overflow 队列满时的处理方式
+     * @return 执行器
+     */
+    public static DataExecutor virtual(@NotNull String name, int maxConcurrency, int queueCapacity, @NotNull OverflowPolicy overflow) {
+        return virtual(name, maxConcurrency, queueCapacity, 0L, overflow);
+    }
+
+    private static DataExecutor virtual(String name, int maxConcurrency, int queueCapacity, long offerTimeoutMillis, OverflowPolicy overflow) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        }
+        ThreadFactory factory = Thread.ofVirtual().name(name + "-", 0).factory();
+        return new DataExecutor(name, priorityPool(maxConcurrency, factory), new Semaphore(queueCapacity + maxConcurrency), offerTimeoutMillis, overflow);
+    }
+
+    private static ThreadPoolExecutor priorityPool(int size, ThreadFactory factory) {
+        // 优先级队列本身无界，排队数量由 queueSlots 限制；线程池不会超过核心线程数，因此核心线程数即最大线程数，并允许空闲回收
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), factory);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * 以指定优先级执行操作，操作内（同一线程）提交的任务都使用该优先级
+     * 用于无法直接传递优先级的调用链，例如 BaseDataManager 子类实现的 get / getList
+     * @param priority 优先级
+     * @param action 操作
+     * @return 操作结果
+     */
+    public static <R> R withPriority(@NotNull TaskPriority priority, @NotNull Supplier<R> action) {
+        TaskPriority previous = PRIORITY.get();
+        PRIORITY.set(priority);
+        try {
+            return action.get();
+        } finally {
+            PRIORITY.set(previous);
+        }
+    }
+
+    /**
+     * 提交任务，优先级由 withPriority 决定，默认为 NORMAL
+     * @param task 任务内容
+     * @return 任务结果，被拒绝时返回失败的 future
+     */
+    public <R> CompletableFuture<R> supply(@NotNull Supplier<R> task) {
+        return this.supply(PRIORITY.get(), task);
+    }
+
+    /**
+     * 以指定优先级提交任务
+     * @param priority 优先级
+     * @param task 任务内容
+     * @return 任务结果，被拒绝时返回失败的 future
+     */
+    public <R> CompletableFuture<R> supply(@NotNull TaskPriority priority, @NotNull Supplier<R> task) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        long enqueuedAt = System.nanoTime();
+        this.submitted.increment();
+        RejectedExecutionException rejection = this.acquireSlot();
+        if (rejection != null && !this.delegate.isShutdown()) {
+            if (this.overflow == OverflowPolicy.CALLER_RUNS) {
+                this.callerRuns.increment();
+                this.waiting.incrementAndGet();
+                this.run(task, future, enqueuedAt, false);
+                return future;
+            }
+            if (this.overflow == OverflowPolicy.DROP_OLDEST && this.dropOldest(priority)) {
+                rejection = this.acquireSlot();
+            }
+        }
+        if (rejection != null) {
+            this.rejected.increment();
+            future.completeExceptionally(rejection);
+            return future;
+        }
+        this.waiting.incrementAndGet();
+        try {
+            this.delegate.execute(new PrioritizedTask(priority, this.sequence.getAndIncrement(), () -> this.run(task, future, enqueuedAt, true), future));
+        } catch (RejectedExecutionException e) {
+            this.waiting.decrementAndGet();
+            this.releaseSlot();
+            this.rejected.increment();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 丢弃队列中优先级最低的任务，同一优先级下丢弃最早提交的任务；
+     * 队列中的任务优先级都高于新任务时不丢弃
+     * @param priority 新任务的优先级
+     * @return 是否丢弃了任务
+     */
+    private boolean dropOldest(TaskPriority priority) {
+        BlockingQueue<Runnable> queue = this.delegate.getQueue();
+        // 选中的任务可能已被线程取出，重新选择
+        for (int attempt = 0; attempt < 3; attempt++) {
+            PrioritizedTask victim = null;
+            for (Runnable runnable : queue) {
+                if (!(runnable instanceof PrioritizedTask task)) continue;
+                if (victim == null || task.priority().ordinal() > victim.priority().ordinal()
+                        || (task.priority() == victim.priority() && task.sequence() < victim.sequence())) {
+                    victim = task;
+                }
+            }
+            if (victim == null || victim.priority().ordinal() < priority.ordinal()) return false;
+            if (!queue.remove(victim)) continue;
+            this.waiting.decrementAndGet();
+            this.releaseSlot();
+            this.rejected.increment();
+            victim.future().completeExceptionally(new RejectedExecutionException(this.name + " dropped the oldest task because the queue is full"));
+            return true;
+        }
+        return false;
+    }
+
+    private RejectedExecutionException acquireSlot() {
+        if (this.delegate.isShutdown()) {
+            return new RejectedExecutionException(this.name + " is shut down");
+        }
+        if (this.offerTimeoutMillis <= 0 || isTickThread()) {
+            return this.queueSlots.tryAcquire() ? null : new RejectedExecutionException(this.name + " queue is full");
+        }
+        try {
+            if (!this.queueSlots.tryAcquire(this.offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return new RejectedExecutionException(this.name + " queue is full");
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new RejectedExecutionException(this.name + " interrupted while waiting for queue", e);
+        }
+    }
+
+    private static boolean isTickThread() {
+        return Bukkit.getServer() != null && Bukkit.isPrimaryThread();
+    }
+
+    private void releaseSlot() {
+        this.queueSlots.release();
+    }
+
+    private <R> void run(Supplier<R> task, CompletableFuture<R> future, long enqueuedAt, boolean holdsSlot) {
+        this.waiting.decrementAndGet();
+        this.recordWait(System.nanoTime() - enqueuedAt);
+        try {
+            future.complete(task.get());
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        } finally {
+            if (holdsSlot) this.releaseSlot();
+        }
+    }
+
+    private void recordWait(long nanos) {
+        this.started.increment();
+        this.totalWaitNanos.add(nanos);
+        this.maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * 获取当前运行指标
+     * @return 指标快照
+     */
+    public DataExecutorStats stats() {
+        long count = this.started.sum();
+        double avgWait = count == 0 ? 0 : this.totalWaitNanos.sum() / (double) count / 1_000_000D;
+        return new DataExecutorStats(
+                this.name,
+                this.submitted.sum(),
+                this.rejected.sum(),
+                this.callerRuns.sum(),
+                Math.max(0, this.waiting.get()),
+                avgWait,
+                this.maxWaitNanos.get() / 1_000_000D
+        );
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public boolean isShutdown() {
+        return this.delegate.isShutdown();
+    }
+
+    /**
+     * 停止接收新任务，等待已提交的任务执行完毕，超时后中断剩余任务
+     * @param timeout 最长等待时间
+     * @param unit 时间单位
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        this.delegate.shutdown();
+        try {
+            if (!this.delegate.awaitTermination(timeout, unit)) {
+                this.delegate.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            this.delegate.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 队列中的任务，按优先级、提交顺序排序
+     */
+    private record PrioritizedTask(TaskPriority priority, long sequence, Runnable task, CompletableFuture<?> future) implements Runnable, Comparable<PrioritizedTask> {
+
+        @Override
+        public void run() {
+            this.task.run();
+        }
+
+        @Override
+        public int compareTo(@NotNull PrioritizedTask other) {
+            int result = Integer.compare(this.priority.ordinal(), other.priority.ordinal());
+            return result != 0 ? result : Long.compare(this.sequence, other.sequence);
+        }
+
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.tty.api.utils;
+
+/**
+ * 数据库任务执行器的运行指标
+ * @param name 执行器名称
+ * @param submitted 累计提交的任务数
+ * @param rejected 累计被拒绝或被丢弃的任务数
+ * @param callerRuns 队列已满时在提交线程中直接执行的任务数
+ * @param queueDepth 当前排队等待执行的任务数
+ * @param avgQueueWaitMillis 任务从提交到开始执行的平均等待时间（毫秒）
+ * @param maxQueueWaitMillis 任务从提交到开始执行的最长等待时间（毫秒）
+ */
+public record DataExecutorStats(String name, long submitted, long rejected, long callerRuns, int queueDepth, double avgQueueWaitMillis, double maxQueueWaitMillis) {
+}
@@ -0,0 +1,90 @@
+package com.tty.api.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 以 2 的幂划分区间的延迟直方图，记录时不加锁也不分配对象
+ * 第 i 个区间记录 [2^(i-1), 2^i) 微秒的样本，百分位数取所在区间的上界，误差不超过一倍
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     * @param nanos 耗时（纳秒）
+     */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        long micros = nanos / 1_000L;
+        int index = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        this.buckets.incrementAndGet(index);
+        this.count.increment();
+        this.totalNanos.add(nanos);
+        this.maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * 获取当前统计快照
+     * @return 快照
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.buckets.get(i);
+            total += counts[i];
+        }
+        double mean = total == 0 ? 0 : this.totalNanos.sum() / (double) this.count.sum() / 1_000_000D;
+        return new Snapshot(
+                total,
+                mean,
+                percentile(counts, total, 0.50),
+                percentile(counts, total, 0.95),
+                percentile(counts, total, 0.99),
+                this.maxNanos.get() / 1_000_000D
+        );
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets.set(i, 0);
+        }
+        this.count.reset();
+        this.totalNanos.reset();
+        this.maxNanos.set(0);
+    }
+
+    private static double percentile(long[] counts, long total, double quantile) {
+        if (total == 0) return 0;
+        long target = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                // 区间上界 2^i 微秒
+                return (1L << i) / 1_000D;
+            }
+        }
+        return (1L << (counts.length - 1)) / 1_000D;
+    }
+
+    /**
+     * @param count 样本数
+     * @param meanMillis 平均耗时（毫秒）
+     * @param p50Millis 50 分位耗时（毫秒）
+     * @param p95Millis 95 分位耗时（毫秒）
+     * @param p99Millis 99 分位耗时（毫秒）
+     * @param maxMillis 最大耗时（毫秒）
+     */
+    public record Snapshot(long count, double meanMillis, double p50Millis, double p95Millis, double p99Millis, double maxMillis) {
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.tty.api.utils;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.UUID;
+
+/**
+ * 带类型标记的值编码，解码后得到与原值类型相同、equals 相等的对象
+ * 用于在服务器之间或文件中传递主键、缓存键与分区值，只支持常见的键类型
+ */
+public final class TypedValueCodec {
+
+    private TypedValueCodec() {
+    }
+
+    /**
+     * 判断值能否被编码
+     * @param value 值
+     * @return 是否支持
+     */
+    public static boolean isSupported(@Nullable Object value) {
+        return value == null
+                || value instanceof String
+                || value instanceof Integer
+                || value instanceof Long
+                || value instanceof Short
+                || value instanceof Byte
+                || value instanceof Double
+                || value instanceof Float
+                || value instanceof Boolean
+                || value instanceof Character
+                || value instanceof UUID
+                || value instanceof BigDecimal
+                || value instanceof BigInteger;
+    }
+
+    /**
+     * 编码为 类型标记:值 形式的字符串
+     * @param value 值
+     * @return 编码结果
+     * @throws IllegalArgumentException 不支持的类型
+     */
+    public static String encode(@Nullable Object value) {
+        if (value == null) return "N:";
+        char tag = tagOf(value);
+        return tag + ":" + value;
+    }
+
+    /**
+     * 解码 encode 生成的字符串
+     * @param encoded 编码结果
+     * @return 原值
+     * @throws IllegalArgumentException 格式错误
+     */
+    public static @Nullable Object decode(String encoded) {
+        if (encoded == null || encoded.length() < 2 || encoded.charAt(1) != ':') {
+            throw new IllegalArgumentException("invalid typed value: " + encoded);
+        }
+        return parse(encoded.charAt(0), encoded.substring(2));
+    }
+
+    /**
+     * 获取值的类型标记
+     * @param value 值，不能为 null
+     * @return 类型标记
+     */
+    public static char tagOf(Object value) {
+        if (value instanceof String) return 'S';
+        if (value instanceof Integer) return 'I';
+        if (value instanceof Long) return 'J';
+        if (value instanceof Short) return 'H';
+        if (value instanceof Byte) return 'Y';
+        if (value instanceof Double) return 'D';
+        if (value instanceof Float) return 'F';
+        if (value instanceof Boolean) return 'Z';
+        if (value instanceof Character) return 'C';
+        if (value instanceof UUID) return 'U';
+        if (value instanceof BigDecimal) return 'B';
+        if (value instanceof BigInteger) return 'G';
+        throw new IllegalArgumentException("unsupported value type: " + value.getClass().getName());
+    }
+
+    /**
+     * 根据类型标记解析值
+     * @param tag 类型标记
+     * @param text 值的字符串形式
+     * @return 原值
+     */
+    public static @Nullable Object parse(char tag, String text) {
+        return switch (tag) {
+            case 'N' -> null;
+            case 'S' -> text;
+            case 'I' -> Integer.valueOf(text);
+            case 'J' -> Long.valueOf(text);
+            case 'H' -> Short.valueOf(text);
+            case 'Y' -> Byte.valueOf(text);
+            case 'D' -> Double.valueOf(text);
+            case 'F' -> Float.valueOf(text);
+            case 'Z' -> Boolean.valueOf(text);
+            case 'C' -> {
+                if (text.length() != 1) throw new IllegalArgumentException("invalid char value: " + text);
+                yield text.charAt(0);
+            }
+            case 'U' -> UUID.fromString(text);
+            case 'B' -> new BigDecimal(text);
+            case 'G' -> new BigInteger(text);
+            default -> throw new IllegalArgumentException("unknown type tag: " + tag);
+        };
+    }
+
+}
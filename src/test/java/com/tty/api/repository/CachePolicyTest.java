@@ -0,0 +1,26 @@
+package com.tty.api.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CachePolicyTest {
+
+    @Test
+    void invalidRefreshAfterWriteIsRejected() {
+        CachePolicy defaults = CachePolicy.defaults();
+        assertThrows(IllegalArgumentException.class, () -> defaults.withRefreshAfterWrite(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> defaults.withRefreshAfterWrite(Duration.ofSeconds(-1)));
+        assertThrows(IllegalArgumentException.class, () -> defaults.withRefreshAfterWrite(defaults.expireAfterWrite()));
+    }
+
+    @Test
+    void validRefreshAfterWriteIsKept() {
+        Duration refresh = Duration.ofMinutes(5);
+        assertEquals(refresh, CachePolicy.defaults().withRefreshAfterWrite(refresh).refreshAfterWrite());
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.tty.api.repository;
+
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class EntityAccessorTest {
+
+    @BeforeAll
+    static void initTableInfo() {
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), Account.class);
+    }
+
+    @Test
+    void integerLookupHitsLongPrimaryKey() {
+        EntityAccessor.Property pk = EntityAccessor.of(Account.class).primaryKey();
+        assertNotNull(pk);
+        Account account = new Account();
+        account.id = 5L;
+        // 缓存实体时以字段的 Long 值建立索引，getById(5) 使用 Integer 查询
+        assertEquals(pk.fieldKey(pk.get(account)), pk.fieldKey(5));
+        assertEquals(new PartitionedKey<>(PartitionKey.global(), pk.fieldKey(5L)), new PartitionedKey<>(PartitionKey.global(), pk.fieldKey(5)));
+        assertEquals(pk.queryKey(5L), pk.queryKey(5));
+    }
+
+    @TableName("account")
+    static class Account {
+
+        @TableId
+        Long id;
+
+        String name;
+
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.tty.api.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlaceholderLinesTest {
+
+    @Test
+    void trailingPercentIsNotJoinedWithNextLine() {
+        // 拼接后为 "Chance: 50%\0%player_name%"，PlaceholderAPI 会把 "%\0%" 当作一个占位符
+        List<String> lines = List.of("Chance: 50%", "%player_name%");
+        assertFalse(PlaceholderLines.endsOutsidePlaceholder(lines.get(0)));
+        assertTrue(PlaceholderLines.endsOutsidePlaceholder(lines.get(1)));
+    }
+
+    @Test
+    void closedPlaceholdersEndOutside() {
+        assertTrue(PlaceholderLines.endsOutsidePlaceholder("Hello %player_name%!"));
+        assertTrue(PlaceholderLines.endsOutsidePlaceholder("100% sure"));
+        assertTrue(PlaceholderLines.endsOutsidePlaceholder("50%%"));
+    }
+
+    @Test
+    void unclosedPlaceholderDoesNotEndOutside() {
+        assertFalse(PlaceholderLines.endsOutsidePlaceholder("Balance: %vault_eco"));
+    }
+
+    @Test
+    void expandProcessesPlaceholderLinesInOneCallAndCollectsKeys() {
+        List<String> calls = new ArrayList<>();
+        UnaryOperator<String> processor = text -> {
+            calls.add(text);
+            return text.replace("%player_name%", "<name>").replace("%vault_eco%", "<balance>");
+        };
+        Set<String> keys = new HashSet<>();
+        List<String> lines = PlaceholderLines.expand(Arrays.asList("Player: %player_name%", "<gray>Home <home>", null, "Balance: %vault_eco%"), processor, keys);
+
+        assertEquals(Arrays.asList("Player: <name>", "<gray>Home <home>", null, "Balance: <balance>"), lines);
+        assertEquals(1, calls.size());
+        assertEquals(Set.of("name", "home", "balance", "gray"), keys);
+    }
+
+    @Test
+    void expandFallsBackToPerLineWhenSplitDoesNotMatch() {
+        List<String> calls = new ArrayList<>();
+        UnaryOperator<String> processor = text -> {
+            calls.add(text);
+            return text.replace(PlaceholderLines.LINE_SENTINEL, ' ').replace("%a_b%", "<x>");
+        };
+        Set<String> keys = new HashSet<>();
+        List<String> lines = PlaceholderLines.expand(List.of("%a_b%", "%a_b%!"), processor, keys);
+
+        assertEquals(List.of("<x>", "<x>!"), lines);
+        assertEquals(3, calls.size());
+        assertEquals(Set.of("x"), keys);
+    }
+
+    @Test
+    void expandWithoutProcessorOnlyCollectsKeys() {
+        Set<String> keys = new HashSet<>();
+        List<String> lines = PlaceholderLines.expand(List.of("%player_name% <name>"), null, keys);
+
+        assertEquals(List.of("%player_name% <name>"), lines);
+        assertEquals(Set.of("name"), keys);
+    }
+
+    @Test
+    void collectKeysMatchesOnlyLowercaseNames() {
+        Set<String> keys = new HashSet<>();
+        PlaceholderLines.collectKeys("<<a_1> <B> <> <x <y> < z> <c", keys);
+        assertEquals(Set.of("a_1", "y"), keys);
+    }
+
+}